@@ -31,6 +31,7 @@ public class Constants {
     public static final File ENJARIFY_DIR = new File(DATA_DIR,
             "enjarify" + File.separator + Constants.ENJARIFY_VERSION);
     public static final File ADDONS_DIR = new File(DATA_DIR, "addons");
+    public static final File INDEXES_DIR = new File(DATA_DIR, "indexes");
     public static final File SETTINGS_FILE_XML = new File(DATA_DIR, "settings.xml");
     public static final String NEWLINE = System.lineSeparator();
     private static final Runtime RUNTIME = Runtime.getRuntime();
@@ -24,6 +24,7 @@ import com.google.inject.Injector;
 import com.heliosdecompiler.helios.controller.LanguageController;
 import com.heliosdecompiler.helios.controller.PathController;
 import com.heliosdecompiler.helios.controller.UpdateController;
+import com.heliosdecompiler.helios.controller.configuration.WriteBehindConfigurationSaver;
 import com.heliosdecompiler.helios.controller.files.OpenedFileController;
 import com.heliosdecompiler.helios.controller.ui.UserInterfaceController;
 import com.heliosdecompiler.helios.controller.ui.impl.UnsupportedUIController;
@@ -137,8 +138,9 @@ public class Helios {
             new FileHandler(tempConfiguration).save(file);
         }
         FileBasedConfigurationBuilder<XMLConfiguration> builder = configurations.xmlBuilder(file);
-        builder.setAutoSave(true);
-        return builder.getConfiguration();
+        XMLConfiguration configuration = builder.getConfiguration();
+        new WriteBehindConfigurationSaver(configuration, file).install();
+        return configuration;
     }
 
     public static void handleCommandLine(String[] args, Injector injector) {
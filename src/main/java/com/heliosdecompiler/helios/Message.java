@@ -49,11 +49,13 @@ public enum Message {
     TASK_ASSEMBLE_FILE("task.assemble-file", 1),
     TASK_DISASSEMBLE_FILE("task.disassemble-file", 2),
     TASK_DECOMPILE_FILE("task.decompile-file", 2),
+    TASK_DECOMPILE_METHOD("task.decompile-method", 3),
     TASK_LAUNCH_PROCESS("task.launch-process", 1),
     TASK_LOADING_FILE("task.loading-file", 1),
     TASK_RELOADING_FILES("task.reloading-files"),
     TASK_SAVING_FILE("task.saving-file", 1),
     TASK_RELOADING_PATH("task.reloading-path"),
+    TASK_INDEXING_PATH("task.indexing-path", 1),
 
     // Other messages
     ERROR_UNEXPECTED_ERROR("error.unexpected-error", 1),
@@ -20,6 +20,21 @@ public class Settings {
     public static final String PYTHON2_KEY = "executables.python2";
     public static final String LAST_DIR_KEY = "locations.lastOpenDirectory";
     public static final String PATH_KEY = "locations.path";
+    public static final String INCLUDE_JDK_KEY = "locations.includejdk";
     public static final String RECENT_FILES_KEY = "locations.recentfiles";
     public static final String MAX_RECENT_FILES_KEY = "maxrecentfiles";
+    public static final String CLASSPATH_DEPTH_KEY = "decompilers.classpathdepth";
+    public static final String RACE_PREFERRED_KEY = "decompilers.race.preferred";
+    public static final String RACE_GRACE_PERIOD_KEY = "decompilers.race.graceperiod";
+    public static final String FALLBACK_CHAIN_KEY = "decompilers.fallback.chain";
+    public static final String FALLBACK_TIMEOUT_KEY = "decompilers.fallback.timeout";
+    public static final String WORKERS_ENABLED_KEY = "decompilers.workers.enabled";
+    public static final String WORKERS_COUNT_KEY = "decompilers.workers.count";
+    public static final String WORKERS_HEAP_KEY = "decompilers.workers.heap";
+    public static final String WORKERS_TIMEOUT_KEY = "decompilers.workers.timeout";
+    public static final String PREFETCH_ENABLED_KEY = "decompilers.prefetch.enabled";
+    public static final String KRAKATAU_WORKERS_ENABLED_KEY = "krakatau.workers.enabled";
+    public static final String KRAKATAU_WORKERS_COUNT_KEY = "krakatau.workers.count";
+    public static final String GOTO_CLASS_INCLUDE_PATH_KEY = "gotoclass.includepath";
+    public static final String FILETREE_COMPACT_KEY = "filetree.compact";
 }
\ No newline at end of file
@@ -17,19 +17,25 @@
 package com.heliosdecompiler.helios.controller;
 
 import com.google.inject.Inject;
+import com.google.common.hash.Hashing;
 import com.google.inject.Singleton;
+import com.heliosdecompiler.helios.Constants;
 import com.heliosdecompiler.helios.Message;
 import com.heliosdecompiler.helios.Settings;
 import com.heliosdecompiler.helios.controller.backgroundtask.BackgroundTask;
 import com.heliosdecompiler.helios.controller.backgroundtask.BackgroundTaskHelper;
+import com.heliosdecompiler.helios.controller.classpath.ClasspathSource;
+import com.heliosdecompiler.helios.controller.classpath.JarDirectoryClasspathSource;
+import com.heliosdecompiler.helios.controller.classpath.JdkRuntimeClasspathSource;
 import com.heliosdecompiler.helios.controller.files.OpenedFile;
 import com.heliosdecompiler.helios.ui.MessageHandler;
 import org.apache.commons.configuration2.Configuration;
 
 import java.io.File;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReentrantLock;
 
 @Singleton
@@ -38,6 +44,11 @@ public class PathController {
     private ReentrantLock lock = new ReentrantLock();
     private List<OpenedFile> pathOpenedFiles = new ArrayList<>();
     private List<File> pathFiles = new ArrayList<>();
+    private List<ClasspathSource> pathSources = new ArrayList<>();
+    private final AtomicInteger generation = new AtomicInteger();
+
+    private volatile JdkRuntimeClasspathSource jdkSource;
+    private final Map<String, JarDirectoryClasspathSource> directorySources = new HashMap<>();
 
     @Inject
     private Configuration configuration;
@@ -52,19 +63,45 @@ public class PathController {
         tasks.submit(new BackgroundTask(Message.TASK_RELOADING_PATH.format(), true, () -> {
             List<OpenedFile> reloaded = new ArrayList<>();
             List<File> reloadedFiles = new ArrayList<>();
+            List<ClasspathSource> reloadedSources = new ArrayList<>();
+            if (configuration.getBoolean(Settings.INCLUDE_JDK_KEY, true)) {
+                JdkRuntimeClasspathSource jdk = getJdkSource();
+                if (jdk != null) {
+                    reloadedSources.add(jdk);
+                }
+            }
+
+            Set<String> directories = new HashSet<>();
             List<String> path = configuration.getList(String.class, Settings.PATH_KEY, Collections.emptyList());
             for (String filepath : path) {
                 File file = new File(filepath);
-                if (file.exists()) {
+                if (file.isDirectory()) {
+                    JarDirectoryClasspathSource source = getDirectorySource(file);
+                    directories.add(file.getAbsolutePath());
+                    reloadedSources.add(source);
+                    source.scheduleRefresh();
+                } else if (file.exists()) {
                     reloaded.add(new OpenedFile(messageHandler, file));
                     reloadedFiles.add(file);
                 }
             }
 
+            synchronized (directorySources) {
+                for (Iterator<Map.Entry<String, JarDirectoryClasspathSource>> it = directorySources.entrySet().iterator(); it.hasNext(); ) {
+                    Map.Entry<String, JarDirectoryClasspathSource> entry = it.next();
+                    if (!directories.contains(entry.getKey())) {
+                        entry.getValue().close();
+                        it.remove();
+                    }
+                }
+            }
+
             lock.lock();
             try {
                 pathOpenedFiles = reloaded;
                 pathFiles = reloadedFiles;
+                pathSources = reloadedSources;
+                generation.incrementAndGet();
             } finally {
                 lock.unlock();
             }
@@ -80,6 +117,51 @@ public class PathController {
         }
     }
 
+    /**
+     * @return a counter which changes every time the path is reloaded
+     */
+    public int getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * @return the sources which are only consulted when a decompiler looks up a class by name
+     */
+    public List<ClasspathSource> getSources() {
+        lock.lock();
+        try {
+            return pathSources;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private JarDirectoryClasspathSource getDirectorySource(File directory) {
+        synchronized (directorySources) {
+            return directorySources.computeIfAbsent(directory.getAbsolutePath(), key -> {
+                String indexName = Hashing.sha1().hashString(key, StandardCharsets.UTF_8).toString() + ".idx";
+                return new JarDirectoryClasspathSource(directory, new File(Constants.INDEXES_DIR, indexName), refresh ->
+                        tasks.submit(new BackgroundTask(Message.TASK_INDEXING_PATH.format(directory.getName()), true, refresh))
+                );
+            });
+        }
+    }
+
+    public JdkRuntimeClasspathSource getJdkSource() {
+        if (jdkSource == null) {
+            synchronized (this) {
+                if (jdkSource == null) {
+                    try {
+                        jdkSource = JdkRuntimeClasspathSource.create();
+                    } catch (IOException ex) {
+                        messageHandler.handleException(Message.ERROR_IOEXCEPTION_OCCURRED.format(), ex);
+                    }
+                }
+            }
+        }
+        return jdkSource;
+    }
+
     public List<OpenedFile> getOpenedFiles() {
         lock.lock();
         try {
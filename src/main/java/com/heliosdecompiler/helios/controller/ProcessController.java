@@ -40,6 +40,10 @@ public class ProcessController {
     private BackgroundTaskHelper backgroundTaskHelper;
 
     public Process launchProcess(ProcessBuilder launch) throws IOException {
+        return launchProcess(launch, true);
+    }
+
+    public Process launchProcess(ProcessBuilder launch, boolean show) throws IOException {
         Process process = launch.start();
         try {
             lock.lock();
@@ -47,7 +51,7 @@ public class ProcessController {
         } finally {
             lock.unlock();
         }
-        backgroundTaskHelper.submit(new BackgroundTask(Message.TASK_LAUNCH_PROCESS.format(launch.command().stream().collect(Collectors.joining(" "))), true, () -> {
+        backgroundTaskHelper.submit(new BackgroundTask(Message.TASK_LAUNCH_PROCESS.format(launch.command().stream().collect(Collectors.joining(" "))), show, () -> {
             try {
                 process.waitFor();
                 if (!process.isAlive()) {
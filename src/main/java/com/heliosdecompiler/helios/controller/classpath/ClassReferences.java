@@ -0,0 +1,256 @@
+/*
+ * Copyright 2017 Sam Sun <github-contact@samczsun.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.heliosdecompiler.helios.controller.classpath;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Reads what a class refers to straight from its constant pool, without building a tree
+ */
+public class ClassReferences {
+    private static final Cache<HashCode, Set<String>> REFERENCES = CacheBuilder.newBuilder()
+            .maximumSize(20000)
+            .build();
+
+    /**
+     * @return the internal name of the class, or null if the data is not a class file
+     */
+    public static String getClassName(byte[] data) {
+        ConstantPool pool = ConstantPool.read(data);
+        if (pool == null) {
+            return null;
+        }
+        return pool.getClassName(pool.readShort(pool.end + 2));
+    }
+
+    /**
+     * @return every type named by a class constant or a descriptor in the constant pool, excluding the class itself.
+     * Results are cached by the hash of the data
+     */
+    public static Set<String> getReferences(byte[] data) {
+        HashCode hash = Hashing.murmur3_128().hashBytes(data);
+        Set<String> references = REFERENCES.getIfPresent(hash);
+        if (references == null) {
+            references = computeReferences(data);
+            REFERENCES.put(hash, references);
+        }
+        return references;
+    }
+
+    /**
+     * @return the distinct names of the methods declared by the class, in declaration order
+     */
+    public static List<String> getMethodNames(byte[] data) {
+        ConstantPool pool = ConstantPool.read(data);
+        if (pool == null) {
+            return Collections.emptyList();
+        }
+        try {
+            int offset = pool.end + 6;
+            offset += 2 + 2 * pool.readShort(offset);
+            offset = readMembers(pool, offset, null);
+            Set<String> names = new LinkedHashSet<>();
+            readMembers(pool, offset, names);
+            return new ArrayList<>(names);
+        } catch (ArrayIndexOutOfBoundsException ex) {
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Reads a fields or methods table, collecting member names if asked to
+     *
+     * @return the offset just past the table
+     */
+    private static int readMembers(ConstantPool pool, int offset, Set<String> names) {
+        int count = pool.readShort(offset);
+        offset += 2;
+        for (int i = 0; i < count; i++) {
+            if (names != null) {
+                String name = pool.getUtf8(pool.readShort(offset + 2));
+                if (name != null) {
+                    names.add(name);
+                }
+            }
+            int attributes = pool.readShort(offset + 6);
+            offset += 8;
+            for (int j = 0; j < attributes; j++) {
+                offset += 6 + pool.readInt(offset + 2);
+            }
+        }
+        return offset;
+    }
+
+    private static Set<String> computeReferences(byte[] data) {
+        ConstantPool pool = ConstantPool.read(data);
+        if (pool == null) {
+            return Collections.emptySet();
+        }
+
+        Set<String> references = new HashSet<>();
+        for (int i = 1; i < pool.offsets.length; i++) {
+            switch (pool.tags[i]) {
+                case ConstantPool.CLASS: {
+                    String name = pool.getClassName(i);
+                    if (name != null) {
+                        if (name.startsWith("[")) {
+                            addDescriptor(name, references);
+                        } else {
+                            references.add(name);
+                        }
+                    }
+                    break;
+                }
+                case ConstantPool.NAME_AND_TYPE:
+                    addDescriptor(pool.getUtf8(pool.readShort(pool.offsets[i] + 2)), references);
+                    break;
+                case ConstantPool.METHOD_TYPE:
+                    addDescriptor(pool.getUtf8(pool.readShort(pool.offsets[i])), references);
+                    break;
+            }
+        }
+
+        references.remove(pool.getClassName(pool.readShort(pool.end + 2)));
+        return Collections.unmodifiableSet(references);
+    }
+
+    private static void addDescriptor(String descriptor, Set<String> references) {
+        if (descriptor == null) {
+            return;
+        }
+        int start = descriptor.indexOf('L');
+        while (start != -1) {
+            int end = descriptor.indexOf(';', start);
+            if (end == -1) {
+                return;
+            }
+            references.add(descriptor.substring(start + 1, end));
+            start = descriptor.indexOf('L', end);
+        }
+    }
+
+    private static class ConstantPool {
+        static final int UTF8 = 1;
+        static final int CLASS = 7;
+        static final int NAME_AND_TYPE = 12;
+        static final int METHOD_TYPE = 16;
+
+        private final byte[] data;
+        private final int[] offsets;
+        private final byte[] tags;
+        private final int end;
+
+        private ConstantPool(byte[] data, int[] offsets, byte[] tags, int end) {
+            this.data = data;
+            this.offsets = offsets;
+            this.tags = tags;
+            this.end = end;
+        }
+
+        static ConstantPool read(byte[] data) {
+            if (data == null || data.length < 10 || (data[0] & 0xFF) != 0xCA || (data[1] & 0xFF) != 0xFE
+                    || (data[2] & 0xFF) != 0xBA || (data[3] & 0xFF) != 0xBE) {
+                return null;
+            }
+
+            try {
+                int count = ((data[8] & 0xFF) << 8) | (data[9] & 0xFF);
+                int[] offsets = new int[count];
+                byte[] tags = new byte[count];
+                int offset = 10;
+                for (int i = 1; i < count; i++) {
+                    byte tag = data[offset];
+                    tags[i] = tag;
+                    offsets[i] = offset + 1;
+                    switch (tag) {
+                        case UTF8:
+                            offset += 3 + (((data[offset + 1] & 0xFF) << 8) | (data[offset + 2] & 0xFF));
+                            break;
+                        case 3: // Integer
+                        case 4: // Float
+                        case 9: // Fieldref
+                        case 10: // Methodref
+                        case 11: // InterfaceMethodref
+                        case NAME_AND_TYPE:
+                        case 17: // Dynamic
+                        case 18: // InvokeDynamic
+                            offset += 5;
+                            break;
+                        case 5: // Long
+                        case 6: // Double
+                            offset += 9;
+                            i++;
+                            break;
+                        case CLASS:
+                        case 8: // String
+                        case METHOD_TYPE:
+                        case 19: // Module
+                        case 20: // Package
+                            offset += 3;
+                            break;
+                        case 15: // MethodHandle
+                            offset += 4;
+                            break;
+                        default:
+                            return null;
+                    }
+                }
+                if (offset + 4 > data.length) {
+                    return null;
+                }
+                return new ConstantPool(data, offsets, tags, offset);
+            } catch (ArrayIndexOutOfBoundsException ex) {
+                return null;
+            }
+        }
+
+        int readShort(int offset) {
+            return ((data[offset] & 0xFF) << 8) | (data[offset + 1] & 0xFF);
+        }
+
+        int readInt(int offset) {
+            return (readShort(offset) << 16) | readShort(offset + 2);
+        }
+
+        String getClassName(int index) {
+            if (index <= 0 || index >= offsets.length || tags[index] != CLASS) {
+                return null;
+            }
+            return getUtf8(readShort(offsets[index]));
+        }
+
+        String getUtf8(int index) {
+            if (index <= 0 || index >= offsets.length || tags[index] != UTF8) {
+                return null;
+            }
+            int offset = offsets[index];
+            try {
+                return new DataInputStream(new ByteArrayInputStream(data, offset, readShort(offset) + 2)).readUTF();
+            } catch (IOException ex) {
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2017 Sam Sun <github-contact@samczsun.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.heliosdecompiler.helios.controller.classpath;
+
+import com.heliosdecompiler.transformerapi.ClassData;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The classpath handed to a decompiler. Iterating only yields the classes which were resolved up front through
+ * {@link #resolve(Collection, int)}, while lookups by name fall through to the backing {@link ClasspathSession}
+ */
+public class ClasspathMap extends AbstractMap<String, ClassData> {
+    private final ClasspathSession session;
+    private final Map<String, Optional<ClasspathSession.ResolvedClass>> loaded = new ConcurrentHashMap<>();
+    private final Map<String, ClassData> resolved = new LinkedHashMap<>();
+
+    public ClasspathMap(List<ClasspathSource> sources) {
+        this(new ClasspathSession(sources));
+    }
+
+    ClasspathMap(ClasspathSession session) {
+        this.session = session;
+    }
+
+    /**
+     * Resolves the given classes along with everything they reference, following references at most depth levels
+     * deep. A negative depth follows references until there are none left
+     */
+    public ClasspathMap resolve(Collection<String> roots, int depth) {
+        Set<String> visited = new HashSet<>();
+        Collection<String> frontier = roots;
+        for (int level = 0; !frontier.isEmpty() && (depth < 0 || level <= depth); level++) {
+            Set<String> next = new HashSet<>();
+            for (String name : frontier) {
+                if (!visited.add(name)) {
+                    continue;
+                }
+                ClasspathSession.ResolvedClass entry = load(name);
+                if (entry != null) {
+                    synchronized (resolved) {
+                        resolved.put(name, entry.classData);
+                    }
+                    next.addAll(entry.references);
+                }
+            }
+            frontier = next;
+        }
+        return this;
+    }
+
+    @Override
+    public ClassData get(Object key) {
+        if (!(key instanceof String)) {
+            return null;
+        }
+        ClasspathSession.ResolvedClass entry = load((String) key);
+        return entry == null ? null : entry.classData;
+    }
+
+    /**
+     * @return the raw class file, resolved the same way as {@link #get(Object)}
+     */
+    public byte[] getBytes(String internalName) {
+        ClasspathSession.ResolvedClass entry = load(internalName);
+        return entry == null ? null : entry.data;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public Set<Entry<String, ClassData>> entrySet() {
+        synchronized (resolved) {
+            return Collections.unmodifiableMap(new LinkedHashMap<>(resolved)).entrySet();
+        }
+    }
+
+    private ClasspathSession.ResolvedClass load(String internalName) {
+        return loaded.computeIfAbsent(internalName, name -> Optional.ofNullable(session.load(name))).orElse(null);
+    }
+}
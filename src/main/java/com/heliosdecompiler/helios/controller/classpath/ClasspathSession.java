@@ -0,0 +1,92 @@
+/*
+ * Copyright 2017 Sam Sun <github-contact@samczsun.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.heliosdecompiler.helios.controller.classpath;
+
+import com.heliosdecompiler.transformerapi.ClassData;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers every class resolved from a list of {@link ClasspathSource}s so that consecutive decompilations over the
+ * same classpath only parse each class once. Misses are not remembered, as sources may gain classes over time
+ */
+public class ClasspathSession {
+    private final List<ClasspathSource> sources;
+    private final Map<String, ResolvedClass> resolved = new ConcurrentHashMap<>();
+
+    public ClasspathSession(List<ClasspathSource> sources) {
+        this.sources = sources;
+    }
+
+    /**
+     * @return a fresh classpath view backed by this session
+     */
+    public ClasspathMap newClasspath() {
+        return new ClasspathMap(this);
+    }
+
+    public int getResolvedCount() {
+        return resolved.size();
+    }
+
+    ResolvedClass load(String internalName) {
+        ResolvedClass resolvedClass = resolved.get(internalName);
+        if (resolvedClass == null) {
+            resolvedClass = load0(internalName);
+            if (resolvedClass != null) {
+                ResolvedClass existing = resolved.putIfAbsent(internalName, resolvedClass);
+                if (existing != null) {
+                    resolvedClass = existing;
+                }
+            }
+        }
+        return resolvedClass;
+    }
+
+    private ResolvedClass load0(String internalName) {
+        for (ClasspathSource source : sources) {
+            try {
+                byte[] data = source.load(internalName);
+                if (data != null) {
+                    ClassData classData = ClassData.construct(data);
+                    if (classData != null) {
+                        return new ResolvedClass(data, classData, ClassReferences.getReferences(data));
+                    }
+                }
+            } catch (IOException ex) {
+                ex.printStackTrace();
+            }
+        }
+        return null;
+    }
+
+    static class ResolvedClass {
+        final byte[] data;
+        final ClassData classData;
+        final Set<String> references;
+
+        ResolvedClass(byte[] data, ClassData classData, Set<String> references) {
+            this.data = data;
+            this.classData = classData;
+            this.references = references;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2017 Sam Sun <github-contact@samczsun.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.heliosdecompiler.helios.controller.classpath;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * A source of class files which is only consulted when a decompiler asks for a specific class
+ */
+public interface ClasspathSource extends Closeable {
+    String getName();
+
+    /**
+     * @return the raw bytes of the class, or null if this source does not contain it
+     */
+    byte[] load(String internalName) throws IOException;
+}
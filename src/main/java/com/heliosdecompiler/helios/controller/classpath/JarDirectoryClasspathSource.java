@@ -0,0 +1,352 @@
+/*
+ * Copyright 2017 Sam Sun <github-contact@samczsun.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.heliosdecompiler.helios.controller.classpath;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.cache.RemovalListener;
+import com.heliosdecompiler.helios.utils.SingleFlight;
+import org.apache.commons.io.IOUtils;
+
+import java.io.*;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Treats every jar below a directory (such as a local Maven repository) as part of the path, without reading them.
+ * <p>
+ * An index from class name to jar is persisted between sessions and brought up to date in the background by only
+ * rescanning jars whose size or timestamp changed. Lookups which miss only trigger a rescan once the timestamp of a
+ * directory seen by the last scan changed. Jars are opened on demand when a decompiler asks for one of their classes.
+ */
+public class JarDirectoryClasspathSource implements ClasspathSource {
+    private static final int INDEX_VERSION = 1;
+    private static final long REFRESH_INTERVAL = TimeUnit.SECONDS.toMillis(60);
+    private static final SingleFlight<List<Object>, String[]> SCANS = new SingleFlight<>();
+
+    private final Path directory;
+    private final File indexFile;
+    private final Consumer<Runnable> scheduler;
+
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    private final SingleFlight<Boolean, Boolean> refreshes = new SingleFlight<>();
+    private volatile long lastRefresh;
+    // Modification times of every directory seen by the last scan, or null before the first one
+    private volatile Map<Path, Long> directoryTimes;
+
+    private volatile Map<String, IndexedJar> jars;
+    private volatile Map<String, IndexedJar> classIndex = Collections.emptyMap();
+
+    private final LoadingCache<IndexedJar, ZipFile> openJars = CacheBuilder.newBuilder()
+            .maximumSize(32)
+            .expireAfterAccess(5, TimeUnit.MINUTES)
+            .removalListener((RemovalListener<IndexedJar, ZipFile>) notification -> {
+                try {
+                    notification.getValue().close();
+                } catch (IOException ignored) {
+                }
+            })
+            .build(new CacheLoader<IndexedJar, ZipFile>() {
+                @Override
+                public ZipFile load(IndexedJar key) throws IOException {
+                    return new ZipFile(directory.resolve(key.path).toFile());
+                }
+            });
+
+    /**
+     * @param scheduler runs index refreshes off the calling thread
+     */
+    public JarDirectoryClasspathSource(File directory, File indexFile, Consumer<Runnable> scheduler) {
+        this.directory = directory.toPath();
+        this.indexFile = indexFile;
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public String getName() {
+        return directory.toString();
+    }
+
+    @Override
+    public byte[] load(String internalName) throws IOException {
+        if (jars == null) {
+            readIndex();
+        }
+
+        IndexedJar jar = classIndex.get(internalName);
+        if (jar == null) {
+            if (System.currentTimeMillis() - lastRefresh > REFRESH_INTERVAL) {
+                scheduleRefresh(true);
+            }
+            return null;
+        }
+
+        try {
+            ZipFile zipFile = openJars.get(jar);
+            ZipEntry entry = zipFile.getEntry(internalName + ".class");
+            if (entry == null) {
+                // The jar changed since it was indexed
+                scheduleRefresh();
+                return null;
+            }
+            try (InputStream inputStream = zipFile.getInputStream(entry)) {
+                return IOUtils.toByteArray(inputStream);
+            }
+        } catch (ExecutionException ex) {
+            openJars.invalidate(jar);
+            scheduleRefresh();
+            return null;
+        }
+    }
+
+    public void scheduleRefresh() {
+        scheduleRefresh(false);
+    }
+
+    /**
+     * @param ifChanged only rescan if a directory was modified since the last scan
+     */
+    private void scheduleRefresh(boolean ifChanged) {
+        if (refreshing.compareAndSet(false, true)) {
+            scheduler.accept(() -> {
+                try {
+                    if (ifChanged && !directoriesChanged()) {
+                        lastRefresh = System.currentTimeMillis();
+                    } else {
+                        refresh();
+                    }
+                } finally {
+                    refreshing.set(false);
+                }
+            });
+        }
+    }
+
+    /**
+     * Rescans the directory, only reading the jars which were added or changed since the last scan. Callers arriving
+     * while a rescan is running wait for it rather than starting another
+     */
+    public void refresh() {
+        try {
+            refreshes.execute(Boolean.TRUE, () -> {
+                refresh0();
+                return Boolean.TRUE;
+            });
+        } catch (RuntimeException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    /**
+     * Adding, removing or replacing a jar through a rename touches the directory it is in, so this is much cheaper
+     * than walking the whole tree again
+     */
+    private boolean directoriesChanged() {
+        Map<Path, Long> times = directoryTimes;
+        if (times == null) {
+            return true;
+        }
+        for (Map.Entry<Path, Long> entry : times.entrySet()) {
+            File directory = entry.getKey().toFile();
+            if (directory.lastModified() != entry.getValue()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private synchronized void refresh0() {
+        lastRefresh = System.currentTimeMillis();
+        if (jars == null) {
+            readIndex();
+        }
+
+        Map<String, IndexedJar> previous = jars;
+        Map<String, IndexedJar> current = new HashMap<>();
+        Map<Path, Long> times = new HashMap<>();
+        boolean[] changed = new boolean[1];
+
+        try {
+            Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    times.put(dir, attrs.lastModifiedTime().toMillis());
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (attrs.isRegularFile() && file.getFileName().toString().endsWith(".jar")) {
+                        String path = directory.relativize(file).toString();
+                        long lastModified = attrs.lastModifiedTime().toMillis();
+
+                        IndexedJar jar = previous.get(path);
+                        if (jar == null || jar.lastModified != lastModified || jar.length != attrs.size()) {
+                            jar = scan(file, path, lastModified, attrs.size());
+                            changed[0] = true;
+                        }
+                        current.put(path, jar);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException ex) {
+            ex.printStackTrace();
+            return;
+        }
+        directoryTimes = times;
+
+        if (changed[0] || current.size() != previous.size()) {
+            for (IndexedJar jar : previous.values()) {
+                if (current.get(jar.path) != jar) {
+                    openJars.invalidate(jar);
+                }
+            }
+            publish(current);
+            writeIndex();
+        }
+    }
+
+    private IndexedJar scan(Path file, String path, long lastModified, long length) {
+        // Directories on the path may overlap, in which case their refreshes can reach the same jar at once
+        List<Object> key = Arrays.asList(file.toAbsolutePath().toString(), lastModified, length);
+        try {
+            String[] classes = SCANS.execute(key, () -> {
+                List<String> names = new ArrayList<>();
+                try (ZipFile zipFile = new ZipFile(file.toFile())) {
+                    Enumeration<? extends ZipEntry> entries = zipFile.entries();
+                    while (entries.hasMoreElements()) {
+                        String name = entries.nextElement().getName();
+                        if (name.endsWith(".class") && !name.startsWith("META-INF/") && !name.endsWith("module-info.class")) {
+                            names.add(name.substring(0, name.length() - ".class".length()));
+                        }
+                    }
+                }
+                return names.toArray(new String[names.size()]);
+            });
+            return new IndexedJar(path, lastModified, length, classes);
+        } catch (Exception ex) {
+            // Corrupt or partially downloaded artifact. It is remembered without any classes so that it is only
+            // scanned again once its size or timestamp changes
+            return new IndexedJar(path, lastModified, length, new String[0]);
+        }
+    }
+
+    private void publish(Map<String, IndexedJar> jars) {
+        Map<String, IndexedJar> index = new HashMap<>();
+        for (IndexedJar jar : jars.values()) {
+            for (String className : jar.classes) {
+                index.putIfAbsent(className, jar);
+            }
+        }
+        this.jars = jars;
+        this.classIndex = index;
+    }
+
+    private synchronized void readIndex() {
+        if (jars != null) {
+            return;
+        }
+        Map<String, IndexedJar> read = new HashMap<>();
+        if (indexFile.isFile()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+                if (in.readInt() == INDEX_VERSION && in.readUTF().equals(directory.toString())) {
+                    int jarCount = in.readInt();
+                    for (int i = 0; i < jarCount; i++) {
+                        String path = in.readUTF();
+                        long lastModified = in.readLong();
+                        long length = in.readLong();
+                        String[] classes = new String[in.readInt()];
+                        for (int j = 0; j < classes.length; j++) {
+                            classes[j] = in.readUTF();
+                        }
+                        read.put(path, new IndexedJar(path, lastModified, length, classes));
+                    }
+                }
+            } catch (IOException ex) {
+                // Rebuilt by the next refresh
+                read.clear();
+            }
+        }
+        publish(read);
+    }
+
+    private void writeIndex() {
+        File parent = indexFile.getParentFile();
+        if (!parent.exists() && !parent.mkdirs()) {
+            return;
+        }
+        File temp = new File(parent, indexFile.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(INDEX_VERSION);
+            out.writeUTF(directory.toString());
+            Collection<IndexedJar> values = jars.values();
+            out.writeInt(values.size());
+            for (IndexedJar jar : values) {
+                out.writeUTF(jar.path);
+                out.writeLong(jar.lastModified);
+                out.writeLong(jar.length);
+                out.writeInt(jar.classes.length);
+                for (String className : jar.classes) {
+                    out.writeUTF(className);
+                }
+            }
+        } catch (IOException ex) {
+            ex.printStackTrace();
+            return;
+        }
+        try {
+            Files.move(temp.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    @Override
+    public void close() {
+        openJars.invalidateAll();
+    }
+
+    private static class IndexedJar {
+        private final String path;
+        private final long lastModified;
+        private final long length;
+        private final String[] classes;
+
+        IndexedJar(String path, long lastModified, long length, String[] classes) {
+            this.path = path;
+            this.lastModified = lastModified;
+            this.length = length;
+            this.classes = classes;
+        }
+    }
+}
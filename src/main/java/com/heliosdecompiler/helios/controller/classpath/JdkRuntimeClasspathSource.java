@@ -0,0 +1,203 @@
+/*
+ * Copyright 2017 Sam Sun <github-contact@samczsun.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.heliosdecompiler.helios.controller.classpath;
+
+import org.apache.commons.io.IOUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Exposes the classes of the running JDK without reading them into memory up front.
+ * <p>
+ * Java 8 and below ship an rt.jar, which is opened as a {@link ZipFile} so that only the (mapped) central directory
+ * is touched until a class is requested. Java 9+ exposes the runtime image through the jrt:/ filesystem, which is
+ * preferred over the jmods as it is backed by the already mapped modules image.
+ */
+public class JdkRuntimeClasspathSource implements ClasspathSource {
+    private final String name;
+    private final Loader loader;
+
+    private JdkRuntimeClasspathSource(String name, Loader loader) {
+        this.name = name;
+        this.loader = loader;
+    }
+
+    public static JdkRuntimeClasspathSource create() throws IOException {
+        File javaHome = new File(System.getProperty("java.home"));
+
+        File rtJar = new File(javaHome, "lib" + File.separator + "rt.jar");
+        if (rtJar.isFile()) {
+            return new JdkRuntimeClasspathSource(rtJar.getAbsolutePath(), new ZipLoader(Collections.singletonList(new ZipFile(rtJar)), ""));
+        }
+
+        try {
+            FileSystem jrt = FileSystems.getFileSystem(URI.create("jrt:/"));
+            return new JdkRuntimeClasspathSource("jrt:/", new JrtLoader(jrt));
+        } catch (ProviderNotFoundException | FileSystemNotFoundException ignored) {
+        }
+
+        File[] jmods = new File(javaHome, "jmods").listFiles((dir, file) -> file.endsWith(".jmod"));
+        if (jmods != null && jmods.length > 0) {
+            List<ZipFile> zipFiles = new ArrayList<>();
+            for (File jmod : jmods) {
+                zipFiles.add(new ZipFile(jmod));
+            }
+            return new JdkRuntimeClasspathSource(new File(javaHome, "jmods").getAbsolutePath(), new ZipLoader(zipFiles, "classes/"));
+        }
+
+        throw new IOException("Could not locate the runtime classes of " + javaHome);
+    }
+
+    /**
+     * @return the rt.jar backing this source, if there is one
+     */
+    public File getRuntimeJar() {
+        if (loader instanceof ZipLoader && ((ZipLoader) loader).prefix.isEmpty()) {
+            return new File(name);
+        }
+        return null;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public byte[] load(String internalName) throws IOException {
+        return loader.load(internalName);
+    }
+
+    @Override
+    public void close() throws IOException {
+        loader.close();
+    }
+
+    private interface Loader extends java.io.Closeable {
+        byte[] load(String internalName) throws IOException;
+    }
+
+    private static class ZipLoader implements Loader {
+        private final List<ZipFile> zipFiles;
+        private final String prefix;
+
+        // Only built when there is more than one archive to search, in which case it maps packages to their archive
+        private volatile Map<String, ZipFile> packageIndex;
+
+        ZipLoader(List<ZipFile> zipFiles, String prefix) {
+            this.zipFiles = zipFiles;
+            this.prefix = prefix;
+        }
+
+        @Override
+        public byte[] load(String internalName) throws IOException {
+            String entryName = prefix + internalName + ".class";
+            ZipFile zipFile = zipFiles.size() == 1 ? zipFiles.get(0) : getPackageIndex().get(getPackage(internalName));
+            if (zipFile == null) {
+                return null;
+            }
+            ZipEntry entry = zipFile.getEntry(entryName);
+            if (entry == null) {
+                return null;
+            }
+            try (InputStream inputStream = zipFile.getInputStream(entry)) {
+                return IOUtils.toByteArray(inputStream);
+            }
+        }
+
+        private Map<String, ZipFile> getPackageIndex() {
+            if (packageIndex == null) {
+                synchronized (this) {
+                    if (packageIndex == null) {
+                        Map<String, ZipFile> index = new HashMap<>();
+                        for (ZipFile zipFile : zipFiles) {
+                            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+                            while (entries.hasMoreElements()) {
+                                String entryName = entries.nextElement().getName();
+                                if (entryName.startsWith(prefix) && entryName.endsWith(".class")) {
+                                    index.putIfAbsent(getPackage(entryName.substring(prefix.length())), zipFile);
+                                }
+                            }
+                        }
+                        packageIndex = index;
+                    }
+                }
+            }
+            return packageIndex;
+        }
+
+        @Override
+        public void close() throws IOException {
+            for (ZipFile zipFile : zipFiles) {
+                zipFile.close();
+            }
+        }
+    }
+
+    private static class JrtLoader implements Loader {
+        private final FileSystem fileSystem;
+        private final Map<String, List<String>> modulesByPackage = new ConcurrentHashMap<>();
+
+        JrtLoader(FileSystem fileSystem) {
+            this.fileSystem = fileSystem;
+        }
+
+        @Override
+        public byte[] load(String internalName) throws IOException {
+            for (String module : modulesByPackage.computeIfAbsent(getPackage(internalName), this::findModules)) {
+                Path path = fileSystem.getPath("/modules", module, internalName + ".class");
+                if (Files.exists(path)) {
+                    return Files.readAllBytes(path);
+                }
+            }
+            return null;
+        }
+
+        private List<String> findModules(String pkg) {
+            Path packageDir = fileSystem.getPath("/packages", pkg.replace('/', '.'));
+            if (!Files.isDirectory(packageDir)) {
+                return Collections.emptyList();
+            }
+            List<String> modules = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(packageDir)) {
+                for (Path module : stream) {
+                    modules.add(module.getFileName().toString());
+                }
+            } catch (IOException ignored) {
+            }
+            return modules;
+        }
+
+        @Override
+        public void close() {
+            // The jrt filesystem is owned by the runtime
+        }
+    }
+
+    private static String getPackage(String internalName) {
+        int index = internalName.lastIndexOf('/');
+        return index == -1 ? "" : internalName.substring(0, index);
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2017 Sam Sun <github-contact@samczsun.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.heliosdecompiler.helios.controller.classpath;
+
+import com.heliosdecompiler.helios.controller.files.OpenedFile;
+
+/**
+ * Looks up classes inside an {@link OpenedFile} by their internal name rather than their path
+ */
+public class OpenedFileClasspathSource implements ClasspathSource {
+    private final OpenedFile file;
+
+    public OpenedFileClasspathSource(OpenedFile file) {
+        this.file = file;
+    }
+
+    @Override
+    public String getName() {
+        return file.getTarget().toString();
+    }
+
+    @Override
+    public byte[] load(String internalName) {
+        String path = file.getPathOfClass(internalName);
+        return path == null ? null : file.getContents().get(path);
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2017 Sam Sun <github-contact@samczsun.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.heliosdecompiler.helios.controller.configuration;
+
+import org.apache.commons.configuration2.FileBasedConfiguration;
+import org.apache.commons.configuration2.event.ConfigurationEvent;
+import org.apache.commons.configuration2.ex.ConfigurationException;
+import org.apache.commons.configuration2.io.FileHandler;
+import org.apache.commons.configuration2.sync.ReadWriteSynchronizer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Saves a file based configuration some time after it was last changed instead of on every change. The file is
+ * written to a temporary file first and then moved over the old one, so a crash mid-save never leaves a truncated
+ * settings file behind. Whatever is still pending is saved when the JVM shuts down
+ */
+public class WriteBehindConfigurationSaver {
+    private static final long DEBOUNCE_MILLIS = 500;
+    private static final long MAX_DELAY_MILLIS = 5000;
+
+    private final FileBasedConfiguration configuration;
+    private final File file;
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "Configuration Saver");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicLong version = new AtomicLong();
+    private long savedVersion;
+    private long firstPendingChange = -1;
+    private ScheduledFuture<?> scheduled;
+
+    public WriteBehindConfigurationSaver(FileBasedConfiguration configuration, File file) {
+        this.configuration = configuration;
+        this.file = file;
+    }
+
+    public void install() {
+        configuration.setSynchronizer(new ReadWriteSynchronizer());
+        configuration.addEventListener(ConfigurationEvent.ANY, event -> {
+            if (!event.isBeforeUpdate()) {
+                changed();
+            }
+        });
+        Runtime.getRuntime().addShutdownHook(new Thread(this::flush, "Configuration Saver Shutdown"));
+    }
+
+    private synchronized void changed() {
+        version.incrementAndGet();
+        long now = System.currentTimeMillis();
+        if (firstPendingChange == -1) {
+            firstPendingChange = now;
+        }
+        if (scheduled != null) {
+            scheduled.cancel(false);
+        }
+        // Keep pushing the save back while changes keep coming, but never past MAX_DELAY_MILLIS after the first one
+        long delay = Math.max(0, Math.min(DEBOUNCE_MILLIS, firstPendingChange + MAX_DELAY_MILLIS - now));
+        scheduled = executor.schedule(this::flush, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Saves the configuration now if it has changed since the last save
+     */
+    public void flush() {
+        long target;
+        synchronized (this) {
+            target = version.get();
+            if (target == savedVersion) {
+                return;
+            }
+            firstPendingChange = -1;
+            scheduled = null;
+        }
+        synchronized (file) {
+            try {
+                save();
+                synchronized (this) {
+                    savedVersion = Math.max(savedVersion, target);
+                }
+            } catch (IOException | ConfigurationException ex) {
+                ex.printStackTrace();
+            }
+        }
+    }
+
+    private void save() throws IOException, ConfigurationException {
+        File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+        new FileHandler(configuration).save(temp);
+        try {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -0,0 +1,627 @@
+/*
+ * Copyright 2017 Sam Sun <github-contact@samczsun.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.heliosdecompiler.helios.controller.files;
+
+import com.google.inject.Singleton;
+import org.apache.commons.io.IOUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+
+/**
+ * Writes the contents of an opened file to a zip archive. Entries which were not modified are copied byte for byte,
+ * still compressed, from the file they were read from; only modified and new entries are deflated, in parallel. The archive is
+ * written to a temporary file next to the destination and moved into place once complete
+ */
+@Singleton
+public class ArchiveExporter {
+    private static final int LOCAL_HEADER = 0x04034b50;
+    private static final int CENTRAL_HEADER = 0x02014b50;
+    private static final int END = 0x06054b50;
+    private static final int ZIP64_END = 0x06064b50;
+    private static final int ZIP64_LOCATOR = 0x07064b50;
+
+    private static final long MAX_32 = 0xFFFFFFFFL;
+    private static final int MAX_16 = 0xFFFF;
+
+    private static final int DEFLATED = 8;
+    private static final int FLAG_UTF8 = 0x800;
+
+    /**
+     * Copies what has to be exported, so that the export can run in the background while the file keeps being edited.
+     * Call this on the thread which modifies the file. Only modified entries are copied while the source is still the
+     * file that was read, everything else is read back from it during the export
+     */
+    public Snapshot snapshot(OpenedFile file) {
+        Map<String, byte[]> contents = file.getContents();
+        if (!file.isSourceUnchanged()) {
+            return new Snapshot(file, new ArrayList<>(contents.keySet()), new HashMap<>(contents), true);
+        }
+        Map<String, byte[]> modified = new HashMap<>();
+        for (String path : file.getModifiedPaths()) {
+            modified.put(path, contents.get(path));
+        }
+        return new Snapshot(file, new ArrayList<>(contents.keySet()), modified, false);
+    }
+
+    public void export(Snapshot snapshot, File destination) throws IOException {
+        List<Job> jobs = new ArrayList<>();
+        Set<String> paths = new LinkedHashSet<>(snapshot.paths);
+
+        try (FileChannel source = openSource(snapshot.file);
+             SourceReader reader = new SourceReader(snapshot.file.getTarget())) {
+            if (source == null && !snapshot.complete) {
+                throw new IOException("The source of " + snapshot.file.getTarget() + " changed while exporting");
+            }
+            if (source != null) {
+                Map<String, SourceEntry> sourceEntries = new LinkedHashMap<>();
+                try {
+                    for (SourceEntry entry : readCentralDirectory(source)) {
+                        sourceEntries.remove(entry.getName());
+                        sourceEntries.put(entry.getName(), entry);
+                    }
+                } catch (ZipException ex) {
+                    // not something we can copy from, everything gets deflated
+                    sourceEntries.clear();
+                }
+                for (SourceEntry entry : sourceEntries.values()) {
+                    String name = entry.getName();
+                    if (paths.remove(name)) {
+                        if (snapshot.contents.containsKey(name)) {
+                            jobs.add(new Job(name, snapshot.contents.get(name)));
+                        } else if (entry.isCopyable()) {
+                            jobs.add(new Job(entry));
+                        } else {
+                            // too large or oddly laid out to copy as is, so it is inflated and deflated again
+                            jobs.add(new Job(name, null));
+                        }
+                    }
+                }
+            }
+            List<String> remaining = new ArrayList<>(paths);
+            Collections.sort(remaining);
+            for (String path : remaining) {
+                jobs.add(new Job(path, snapshot.contents.get(path)));
+            }
+
+            Path target = destination.getAbsoluteFile().toPath();
+            Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+            write(jobs, source, reader, temp);
+            try {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+    }
+
+    private FileChannel openSource(OpenedFile file) throws IOException {
+        if (!file.isSourceUnchanged()) {
+            return null;
+        }
+        return FileChannel.open(file.getTarget(), StandardOpenOption.READ);
+    }
+
+    private void write(List<Job> jobs, FileChannel source, SourceReader reader, Path temp) throws IOException {
+        int threads = Runtime.getRuntime().availableProcessors();
+        int window = threads * 2;
+        ExecutorService pool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "Archive Export");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        boolean complete = false;
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ZipWriter writer = new ZipWriter(out);
+            long now = dosTime(System.currentTimeMillis());
+
+            // only a few jobs are deflated ahead of the writer, so memory stays bounded however many entries changed
+            int submitted = 0;
+            for (int i = 0; i < jobs.size(); i++) {
+                for (; submitted < jobs.size() && submitted <= i + window; submitted++) {
+                    Job job = jobs.get(submitted);
+                    if (job.raw == null) {
+                        byte[] data = job.data;
+                        String path = job.path;
+                        job.compressed = pool.submit(() -> deflate(data != null ? data : reader.read(path)));
+                        job.data = null;
+                    }
+                }
+
+                Job job = jobs.get(i);
+                if (job.raw != null) {
+                    writer.copy(job.raw, source);
+                } else {
+                    writer.write(job.name, job.compressed.get(), now);
+                    job.compressed = null;
+                }
+            }
+            writer.finish();
+            complete = true;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Export interrupted", ex);
+        } catch (ExecutionException ex) {
+            throw new IOException("Could not compress entry", ex.getCause());
+        } finally {
+            pool.shutdownNow();
+            if (!complete) {
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+
+    private static Compressed deflate(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, data.length / 2));
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                int length = deflater.deflate(buffer);
+                out.write(buffer, 0, length);
+            }
+            CRC32 crc = new CRC32();
+            crc.update(data);
+            return new Compressed(out.toByteArray(), data.length, crc.getValue());
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static long dosTime(long millis) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(millis);
+        int year = calendar.get(Calendar.YEAR);
+        if (year < 1980) {
+            return (1 << 21) | (1 << 16);
+        }
+        return (year - 1980) << 25
+                | (calendar.get(Calendar.MONTH) + 1) << 21
+                | calendar.get(Calendar.DAY_OF_MONTH) << 16
+                | calendar.get(Calendar.HOUR_OF_DAY) << 11
+                | calendar.get(Calendar.MINUTE) << 5
+                | calendar.get(Calendar.SECOND) >> 1;
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new ZipException("Unexpected end of archive");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static List<SourceEntry> readCentralDirectory(FileChannel channel) throws IOException {
+        long size = channel.size();
+        int tail = (int) Math.min(size, 22 + MAX_16);
+        ByteBuffer end = read(channel, size - tail, tail);
+        int eocd = -1;
+        for (int i = tail - 22; i >= 0; i--) {
+            if (end.getInt(i) == END) {
+                eocd = i;
+                break;
+            }
+        }
+        if (eocd == -1) {
+            throw new ZipException("No end of central directory");
+        }
+
+        long count = end.getShort(eocd + 10) & MAX_16;
+        long directorySize = end.getInt(eocd + 12) & MAX_32;
+        long directoryOffset = end.getInt(eocd + 16) & MAX_32;
+        long eocdPosition = size - tail + eocd;
+        if ((count == MAX_16 || directorySize == MAX_32 || directoryOffset == MAX_32) && eocdPosition >= 20) {
+            ByteBuffer locator = read(channel, eocdPosition - 20, 20);
+            if (locator.getInt(0) == ZIP64_LOCATOR) {
+                ByteBuffer record = read(channel, locator.getLong(8), 56);
+                if (record.getInt(0) != ZIP64_END) {
+                    throw new ZipException("Bad zip64 end of central directory");
+                }
+                count = record.getLong(32);
+                directorySize = record.getLong(40);
+                directoryOffset = record.getLong(48);
+            }
+        }
+        if (directorySize > Integer.MAX_VALUE) {
+            throw new ZipException("Central directory too large");
+        }
+
+        ByteBuffer directory = read(channel, directoryOffset, (int) directorySize);
+        List<SourceEntry> entries = new ArrayList<>();
+        int position = 0;
+        for (long i = 0; i < count; i++) {
+            if (position + 46 > directory.limit() || directory.getInt(position) != CENTRAL_HEADER) {
+                throw new ZipException("Bad central directory");
+            }
+            SourceEntry entry = new SourceEntry();
+            entry.versionMadeBy = directory.getShort(position + 4) & MAX_16;
+            entry.flags = directory.getShort(position + 8) & MAX_16;
+            entry.method = directory.getShort(position + 10) & MAX_16;
+            entry.time = directory.getInt(position + 12) & MAX_32;
+            entry.crc = directory.getInt(position + 16) & MAX_32;
+            entry.compressedSize = directory.getInt(position + 20) & MAX_32;
+            entry.size = directory.getInt(position + 24) & MAX_32;
+            int nameLength = directory.getShort(position + 28) & MAX_16;
+            int extraLength = directory.getShort(position + 30) & MAX_16;
+            int commentLength = directory.getShort(position + 32) & MAX_16;
+            entry.externalAttributes = directory.getInt(position + 38) & MAX_32;
+            entry.offset = directory.getInt(position + 42) & MAX_32;
+            entry.name = new byte[nameLength];
+            directory.position(position + 46);
+            directory.get(entry.name);
+
+            int extra = position + 46 + nameLength;
+            int extraEnd = extra + extraLength;
+            while (extra + 4 <= extraEnd) {
+                int id = directory.getShort(extra) & MAX_16;
+                int length = directory.getShort(extra + 2) & MAX_16;
+                if (id == 0x0001) {
+                    int field = extra + 4;
+                    if (entry.size == MAX_32) {
+                        entry.size = directory.getLong(field);
+                        field += 8;
+                    }
+                    if (entry.compressedSize == MAX_32) {
+                        entry.compressedSize = directory.getLong(field);
+                        field += 8;
+                    }
+                    if (entry.offset == MAX_32) {
+                        entry.offset = directory.getLong(field);
+                    }
+                }
+                extra += 4 + length;
+            }
+
+            entries.add(entry);
+            position = extraEnd + commentLength;
+        }
+
+        // every entry, with its local header and data descriptor, runs up to where the next one starts
+        List<SourceEntry> byOffset = new ArrayList<>(entries);
+        byOffset.sort(Comparator.comparingLong(entry -> entry.offset));
+        for (int i = 0; i < byOffset.size(); i++) {
+            byOffset.get(i).end = i + 1 < byOffset.size() ? byOffset.get(i + 1).offset : directoryOffset;
+        }
+        return entries;
+    }
+
+    public static final class Snapshot {
+        private final OpenedFile file;
+        private final List<String> paths;
+        private final Map<String, byte[]> contents;
+        private final boolean complete;
+
+        private Snapshot(OpenedFile file, List<String> paths, Map<String, byte[]> contents, boolean complete) {
+            this.file = file;
+            this.paths = paths;
+            this.contents = contents;
+            this.complete = complete;
+        }
+    }
+
+    /**
+     * Reads unmodified entries back from the source when they cannot be copied as they are
+     */
+    private static final class SourceReader implements Closeable {
+        private final Path target;
+        private ZipFile zip;
+        private boolean opened;
+
+        SourceReader(Path target) {
+            this.target = target;
+        }
+
+        private synchronized ZipFile zip() throws IOException {
+            if (!opened) {
+                opened = true;
+                try {
+                    zip = new ZipFile(target.toFile());
+                } catch (ZipException ex) {
+                    // a single class, which was read as a whole
+                    zip = null;
+                }
+            }
+            return zip;
+        }
+
+        byte[] read(String path) throws IOException {
+            ZipFile zip = zip();
+            ZipEntry entry = zip == null ? null : zip.getEntry(path);
+            if (entry != null) {
+                try (InputStream in = zip.getInputStream(entry)) {
+                    return IOUtils.toByteArray(in);
+                }
+            }
+            if (path.equals(target.toString())) {
+                return Files.readAllBytes(target);
+            }
+            throw new ZipException("Cannot read " + path + " from " + target);
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            if (zip != null) {
+                zip.close();
+            }
+        }
+    }
+
+    private static final class SourceEntry {
+        private byte[] name;
+        private int versionMadeBy;
+        private int flags;
+        private int method;
+        private long time;
+        private long crc;
+        private long compressedSize;
+        private long size;
+        private long externalAttributes;
+        private long offset;
+        private long end;
+
+        String getName() {
+            return new String(name, StandardCharsets.UTF_8);
+        }
+
+        boolean isCopyable() {
+            return compressedSize < MAX_32 && size < MAX_32 && end >= offset;
+        }
+    }
+
+    private static final class Compressed {
+        private final byte[] data;
+        private final long size;
+        private final long crc;
+
+        Compressed(byte[] data, long size, long crc) {
+            this.data = data;
+            this.size = size;
+            this.crc = crc;
+        }
+    }
+
+    private static final class Job {
+        private final byte[] name;
+        private final String path;
+        private final SourceEntry raw;
+        private byte[] data;
+        private Future<Compressed> compressed;
+
+        Job(SourceEntry raw) {
+            this.name = raw.name;
+            this.path = null;
+            this.raw = raw;
+        }
+
+        Job(String path, byte[] data) {
+            this.name = path.getBytes(StandardCharsets.UTF_8);
+            this.path = path;
+            this.raw = null;
+            this.data = data;
+        }
+    }
+
+    private static final class CentralEntry {
+        private byte[] name;
+        // MS-DOS and zip 2.0 for entries written here, the host of the source otherwise so that its attributes still
+        // mean the same thing
+        private int versionMadeBy = 20;
+        private int flags;
+        private int method;
+        private long time;
+        private long crc;
+        private long compressedSize;
+        private long size;
+        private long externalAttributes;
+        private long offset;
+    }
+
+    private static final class ZipWriter {
+        private final FileChannel out;
+        private final List<CentralEntry> central = new ArrayList<>();
+        private final ByteBuffer header = ByteBuffer.allocate(46 + MAX_16 + 12).order(ByteOrder.LITTLE_ENDIAN);
+
+        private FileChannel runSource;
+        private long runStart;
+        private long runEnd;
+        private long runOutput;
+
+        ZipWriter(FileChannel out) {
+            this.out = out;
+        }
+
+        /**
+         * Entries which follow each other in the source are copied together, headers and all, in one transfer
+         */
+        void copy(SourceEntry entry, FileChannel source) throws IOException {
+            if (!entry.isCopyable()) {
+                throw new ZipException("Cannot copy " + entry.getName());
+            }
+            if (runSource != source || entry.offset != runEnd) {
+                flush();
+                runSource = source;
+                runStart = entry.offset;
+                runEnd = entry.offset;
+                runOutput = out.position();
+            }
+            runEnd = entry.end;
+
+            CentralEntry written = new CentralEntry();
+            written.name = entry.name;
+            written.versionMadeBy = entry.versionMadeBy;
+            written.flags = entry.flags;
+            written.method = entry.method;
+            written.time = entry.time;
+            written.crc = entry.crc;
+            written.compressedSize = entry.compressedSize;
+            written.size = entry.size;
+            written.externalAttributes = entry.externalAttributes;
+            written.offset = runOutput + (entry.offset - runStart);
+            central.add(written);
+        }
+
+        private void flush() throws IOException {
+            if (runSource == null) {
+                return;
+            }
+            long position = runStart;
+            long remaining = runEnd - runStart;
+            while (remaining > 0) {
+                long transferred = runSource.transferTo(position, remaining, out);
+                if (transferred <= 0) {
+                    throw new ZipException("Unexpected end of archive");
+                }
+                position += transferred;
+                remaining -= transferred;
+            }
+            runSource = null;
+        }
+
+        void write(byte[] name, Compressed compressed, long time) throws IOException {
+            flush();
+            begin(name, FLAG_UTF8, DEFLATED, time, compressed.crc, compressed.data.length, compressed.size);
+            writeFully(ByteBuffer.wrap(compressed.data));
+        }
+
+        private void begin(byte[] name, int flags, int method, long time, long crc, long compressedSize, long size) throws IOException {
+            if (compressedSize >= MAX_32 || size >= MAX_32) {
+                throw new ZipException("Entry too large: " + new String(name, StandardCharsets.UTF_8));
+            }
+            CentralEntry entry = new CentralEntry();
+            entry.name = name;
+            entry.flags = flags;
+            entry.method = method;
+            entry.time = time;
+            entry.crc = crc;
+            entry.compressedSize = compressedSize;
+            entry.size = size;
+            entry.offset = out.position();
+            central.add(entry);
+
+            header.clear();
+            header.putInt(LOCAL_HEADER);
+            header.putShort((short) 20);
+            header.putShort((short) flags);
+            header.putShort((short) method);
+            header.putInt((int) time);
+            header.putInt((int) crc);
+            header.putInt((int) compressedSize);
+            header.putInt((int) size);
+            header.putShort((short) name.length);
+            header.putShort((short) 0);
+            header.put(name);
+            header.flip();
+            writeFully(header);
+        }
+
+        void finish() throws IOException {
+            flush();
+            long directoryOffset = out.position();
+            for (CentralEntry entry : central) {
+                boolean zip64 = entry.offset >= MAX_32;
+                header.clear();
+                header.putInt(CENTRAL_HEADER);
+                int specVersion = Math.max(entry.versionMadeBy & 0xFF, zip64 ? 45 : 20);
+                header.putShort((short) ((entry.versionMadeBy & 0xFF00) | specVersion));
+                header.putShort((short) (zip64 ? 45 : 20));
+                header.putShort((short) entry.flags);
+                header.putShort((short) entry.method);
+                header.putInt((int) entry.time);
+                header.putInt((int) entry.crc);
+                header.putInt((int) entry.compressedSize);
+                header.putInt((int) entry.size);
+                header.putShort((short) entry.name.length);
+                header.putShort((short) (zip64 ? 12 : 0));
+                header.putShort((short) 0);
+                header.putShort((short) 0);
+                header.putShort((short) 0);
+                header.putInt((int) entry.externalAttributes);
+                header.putInt((int) (zip64 ? MAX_32 : entry.offset));
+                header.put(entry.name);
+                if (zip64) {
+                    header.putShort((short) 0x0001);
+                    header.putShort((short) 8);
+                    header.putLong(entry.offset);
+                }
+                header.flip();
+                writeFully(header);
+            }
+            long directoryEnd = out.position();
+            long directorySize = directoryEnd - directoryOffset;
+
+            boolean zip64 = central.size() >= MAX_16 || directoryOffset >= MAX_32 || directorySize >= MAX_32;
+            header.clear();
+            if (zip64) {
+                header.putInt(ZIP64_END);
+                header.putLong(44);
+                header.putShort((short) 45);
+                header.putShort((short) 45);
+                header.putInt(0);
+                header.putInt(0);
+                header.putLong(central.size());
+                header.putLong(central.size());
+                header.putLong(directorySize);
+                header.putLong(directoryOffset);
+
+                header.putInt(ZIP64_LOCATOR);
+                header.putInt(0);
+                header.putLong(directoryEnd);
+                header.putInt(1);
+            }
+            header.putInt(END);
+            header.putShort((short) 0);
+            header.putShort((short) 0);
+            header.putShort((short) (zip64 ? MAX_16 : central.size()));
+            header.putShort((short) (zip64 ? MAX_16 : central.size()));
+            header.putInt((int) (zip64 ? MAX_32 : directorySize));
+            header.putInt((int) (zip64 ? MAX_32 : directoryOffset));
+            header.putShort((short) 0);
+            header.flip();
+            writeFully(header);
+        }
+
+        private void writeFully(ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+        }
+    }
+}
@@ -0,0 +1,342 @@
+/*
+ * Copyright 2017 Sam Sun <github-contact@samczsun.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.heliosdecompiler.helios.controller.files;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.heliosdecompiler.helios.controller.PathController;
+
+import java.util.*;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * An index of the class names in every opened file, and optionally every file on the path, for finding classes by
+ * fuzzy, camel case aware queries. Each file is indexed once per modification; a query is a scan over precomputed
+ * character masks, with the actual matching only done for the names which contain every character of the query
+ */
+@Singleton
+public class ClassNameIndex {
+    private static final int CHUNK = 16384;
+
+    @Inject
+    private OpenedFileController openedFileController;
+
+    @Inject
+    private PathController pathController;
+
+    private final Map<OpenedFile, Segment> segments = Collections.synchronizedMap(new WeakHashMap<>());
+
+    /**
+     * Makes sure every file is indexed, so the first query does not have to
+     */
+    public void prepare(boolean includePath) {
+        for (OpenedFile file : openedFileController.getLoadedFiles()) {
+            getSegment(file, false);
+        }
+        if (includePath) {
+            for (OpenedFile file : pathController.getOpenedFiles()) {
+                getSegment(file, true);
+            }
+        }
+    }
+
+    /**
+     * Passes the best matches found so far to results after every chunk of names, and once more at the end. Stops as
+     * soon as cancelled returns true
+     */
+    public void search(String query, boolean includePath, int limit, BooleanSupplier cancelled, Consumer<List<Entry>> results) {
+        Query q = new Query(query);
+        PriorityQueue<Match> best = new PriorityQueue<>(Collections.reverseOrder());
+
+        List<Segment> toSearch = new ArrayList<>();
+        for (OpenedFile file : openedFileController.getLoadedFiles()) {
+            toSearch.add(getSegment(file, false));
+        }
+        if (includePath) {
+            for (OpenedFile file : pathController.getOpenedFiles()) {
+                toSearch.add(getSegment(file, true));
+            }
+        }
+
+        if (!q.raw.isEmpty()) {
+            for (Segment segment : toSearch) {
+                for (int start = 0; start < segment.entries.length; start += CHUNK) {
+                    if (cancelled.getAsBoolean()) {
+                        return;
+                    }
+                    segment.match(q, start, Math.min(segment.entries.length, start + CHUNK), best, limit);
+                    results.accept(sorted(best));
+                }
+            }
+        }
+        if (!cancelled.getAsBoolean()) {
+            results.accept(sorted(best));
+        }
+    }
+
+    private static List<Entry> sorted(PriorityQueue<Match> best) {
+        List<Match> matches = new ArrayList<>(best);
+        Collections.sort(matches);
+        List<Entry> entries = new ArrayList<>(matches.size());
+        for (Match match : matches) {
+            entries.add(match.entry);
+        }
+        return entries;
+    }
+
+    private Segment getSegment(OpenedFile file, boolean onPath) {
+        Segment segment = segments.get(file);
+        if (segment == null || segment.modificationCount != file.getModificationCount()) {
+            segment = new Segment(file, onPath);
+            segments.put(file, segment);
+        }
+        return segment;
+    }
+
+    private static long mask(String lower) {
+        long mask = 0;
+        for (int i = 0; i < lower.length(); i++) {
+            char c = lower.charAt(i);
+            if (c >= 'a' && c <= 'z') {
+                mask |= 1L << (c - 'a');
+            } else if (c >= '0' && c <= '9') {
+                mask |= 1L << (26 + c - '0');
+            } else if (c == '_') {
+                mask |= 1L << 36;
+            } else if (c == '$') {
+                mask |= 1L << 37;
+            } else if (c == '/') {
+                mask |= 1L << 38;
+            }
+        }
+        return mask;
+    }
+
+    private static boolean isSubsequence(String haystack, String needle) {
+        int j = 0;
+        for (int i = 0; i < haystack.length() && j < needle.length(); i++) {
+            if (haystack.charAt(i) == needle.charAt(j)) {
+                j++;
+            }
+        }
+        return j == needle.length();
+    }
+
+    private static int[] humps(String name) {
+        int[] humps = new int[name.length()];
+        int count = 0;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (i == 0) {
+                humps[count++] = i;
+            } else {
+                char previous = name.charAt(i - 1);
+                if ((Character.isUpperCase(c) && !Character.isUpperCase(previous))
+                        || (Character.isDigit(c) && !Character.isDigit(previous))
+                        || ((previous == '_' || previous == '$') && c != '_' && c != '$')) {
+                    humps[count++] = i;
+                }
+            }
+        }
+        return Arrays.copyOf(humps, count);
+    }
+
+    /**
+     * Every part of the query has to be a prefix of a hump, in order, for example "ArrLi" or "al" for ArrayList
+     */
+    private static boolean matchesHumps(String name, int[] humps, int hump, String query, int from) {
+        if (from == query.length()) {
+            return true;
+        }
+        for (int h = hump; h < humps.length; h++) {
+            int start = humps[h];
+            int end = h + 1 == humps.length ? name.length() : humps[h + 1];
+            int length = 0;
+            while (from + length < query.length() && start + length < end
+                    && Character.toLowerCase(name.charAt(start + length)) == Character.toLowerCase(query.charAt(from + length))) {
+                length++;
+            }
+            for (int k = length; k > 0; k--) {
+                if (matchesHumps(name, humps, h + 1, query, from + k)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    public static final class Entry {
+        private final OpenedFile file;
+        private final String path;
+        private final String internalName;
+        private final String simpleName;
+        private final boolean onPath;
+
+        Entry(OpenedFile file, String path, boolean onPath) {
+            this.file = file;
+            this.path = path;
+            this.internalName = path.substring(0, path.length() - ".class".length());
+            this.simpleName = internalName.substring(internalName.lastIndexOf('/') + 1);
+            this.onPath = onPath;
+        }
+
+        public OpenedFile getFile() {
+            return file;
+        }
+
+        /**
+         * @return the name of the entry in the file
+         */
+        public String getPath() {
+            return path;
+        }
+
+        public String getInternalName() {
+            return internalName;
+        }
+
+        public String getSimpleName() {
+            return simpleName;
+        }
+
+        public boolean isOnPath() {
+            return onPath;
+        }
+    }
+
+    private static final class Query {
+        private final String raw;
+        private final String lower;
+        private final boolean qualified;
+        private final long mask;
+
+        Query(String query) {
+            this.raw = query.trim().replace('.', '/');
+            this.lower = raw.toLowerCase();
+            this.qualified = raw.indexOf('/') != -1;
+            this.mask = mask(lower);
+        }
+    }
+
+    private static final class Segment {
+        private final int modificationCount;
+        private final Entry[] entries;
+        private final String[] simpleNames;
+        private final String[] internalNames;
+        private final long[] simpleMasks;
+        private final long[] internalMasks;
+
+        Segment(OpenedFile file, boolean onPath) {
+            this.modificationCount = file.getModificationCount();
+
+            List<Entry> entries = new ArrayList<>();
+            for (String path : new ArrayList<>(file.getContents().keySet())) {
+                if (path.endsWith(".class")) {
+                    entries.add(new Entry(file, path, onPath));
+                }
+            }
+            this.entries = entries.toArray(new Entry[0]);
+            this.simpleNames = new String[this.entries.length];
+            this.internalNames = new String[this.entries.length];
+            this.simpleMasks = new long[this.entries.length];
+            this.internalMasks = new long[this.entries.length];
+            for (int i = 0; i < this.entries.length; i++) {
+                simpleNames[i] = this.entries[i].simpleName.toLowerCase();
+                internalNames[i] = this.entries[i].internalName.toLowerCase();
+                simpleMasks[i] = mask(simpleNames[i]);
+                internalMasks[i] = mask(internalNames[i]);
+            }
+        }
+
+        void match(Query query, int from, int to, PriorityQueue<Match> best, int limit) {
+            long[] masks = query.qualified ? internalMasks : simpleMasks;
+            for (int i = from; i < to; i++) {
+                if ((masks[i] & query.mask) != query.mask) {
+                    continue;
+                }
+                int rank = query.qualified ? rankQualified(i, query) : rankSimple(i, query);
+                if (rank == -1) {
+                    continue;
+                }
+                Match match = new Match(entries[i], rank);
+                if (best.size() < limit) {
+                    best.add(match);
+                } else if (match.compareTo(best.peek()) < 0) {
+                    best.poll();
+                    best.add(match);
+                }
+            }
+        }
+
+        private int rankSimple(int i, Query query) {
+            String name = simpleNames[i];
+            if (!isSubsequence(name, query.lower)) {
+                return -1;
+            }
+            if (name.equals(query.lower)) {
+                return 0;
+            }
+            if (name.startsWith(query.lower)) {
+                return 1;
+            }
+            String original = entries[i].simpleName;
+            if (matchesHumps(original, humps(original), 0, query.raw, 0)) {
+                return 2;
+            }
+            return name.contains(query.lower) ? 3 : 4;
+        }
+
+        private int rankQualified(int i, Query query) {
+            String name = internalNames[i];
+            if (!isSubsequence(name, query.lower)) {
+                return -1;
+            }
+            if (name.equals(query.lower)) {
+                return 0;
+            }
+            if (name.endsWith("/" + query.lower)) {
+                return 1;
+            }
+            return name.contains(query.lower) ? 3 : 4;
+        }
+    }
+
+    private static final class Match implements Comparable<Match> {
+        private final Entry entry;
+        private final int rank;
+
+        Match(Entry entry, int rank) {
+            this.entry = entry;
+            this.rank = rank;
+        }
+
+        @Override
+        public int compareTo(Match o) {
+            if (rank != o.rank) {
+                return Integer.compare(rank, o.rank);
+            }
+            if (entry.onPath != o.entry.onPath) {
+                return entry.onPath ? 1 : -1;
+            }
+            if (entry.simpleName.length() != o.entry.simpleName.length()) {
+                return Integer.compare(entry.simpleName.length(), o.entry.simpleName.length());
+            }
+            return entry.internalName.compareTo(o.entry.internalName);
+        }
+    }
+}
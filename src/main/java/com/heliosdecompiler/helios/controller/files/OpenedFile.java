@@ -16,8 +16,8 @@
 
 package com.heliosdecompiler.helios.controller.files;
 
-import com.google.common.base.Joiner;
 import com.heliosdecompiler.helios.Message;
+import com.heliosdecompiler.helios.controller.classpath.ClassReferences;
 import com.heliosdecompiler.helios.gui.model.TreeNode;
 import com.heliosdecompiler.helios.ui.MessageHandler;
 import org.apache.commons.io.IOUtils;
@@ -27,9 +27,15 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
@@ -42,13 +48,33 @@ public class OpenedFile {
     private final MessageHandler messageHandler;
     private final Path target;
 
+    // Guards replacing the contents, so that background readers can take a consistent copy
+    private final Object contentsLock = new Object();
     private Map<String, byte[]> fileContents = new HashMap<>();
+    private Set<String> modifiedPaths = new HashSet<>();
+
+    // What the file on disk looked like when it was read
+    private long sourceSize = -1;
+    private long sourceLastModified = -1;
+
+    // Internal name to path, built on first lookup
+    private volatile Map<String, String> classIndex;
+    private final AtomicInteger modifications = new AtomicInteger();
 
     private TreeNode root;
+    private volatile boolean compactPackages;
 
     public OpenedFile(MessageHandler messageHandler, File target) {
+        this(messageHandler, target, false);
+    }
+
+    /**
+     * @param compactPackages whether chains of packages which only contain one other package are shown as one node
+     */
+    public OpenedFile(MessageHandler messageHandler, File target, boolean compactPackages) {
         this.messageHandler = messageHandler;
         this.target = target.toPath();
+        this.compactPackages = compactPackages;
 
         reset();
     }
@@ -68,26 +94,92 @@ public class OpenedFile {
 
         readQuick();
 
-        for (String path : fileContents.keySet()) {
-            String[] split = path.split("/");
+        List<String> paths = new ArrayList<>(fileContents.keySet());
+        Collections.sort(paths);
+        build(this.root, paths, 0, paths.size(), 0);
+    }
 
-            TreeNode now = root;
+    /**
+     * Adds the entries paths[from, to), which all start with the same offset characters, below parent. Sorted entries
+     * in the same directory are next to each other, so a package whose only child is another package can be merged
+     * into it before either node exists. Merged nodes are named after all of their packages joined by '/', so their
+     * path does not change
+     */
+    private void build(TreeNode parent, List<String> paths, int from, int to, int offset) {
+        int i = from;
+        while (i < to) {
+            String path = paths.get(i);
+            int slash = path.indexOf('/', offset);
+            if (slash == -1) {
+                TreeNode leaf = parent.getChild(path.substring(offset));
+                if (leaf == null) {
+                    leaf = parent.createChild(path.substring(offset));
+                    leaf.getMetadata().put(FULL_PATH_KEY, path);
+                    leaf.getMetadata().put(OPENED_FILE, this);
+                    leaf.setFlag(IS_LEAF, true);
+                }
+                i++;
+                continue;
+            }
 
-            for (int i = 0; i < split.length; i++) {
-                String segment = split[i];
-                TreeNode next = now.getChild(segment);
-                if (next == null) {
-                    next = now.createChild(segment);
-                    next.getMetadata().put(FULL_PATH_KEY, Joiner.on('/').join(Arrays.asList(split).subList(0, i + 1)));
-                    next.getMetadata().put(OPENED_FILE, this);
+            String prefix = path.substring(0, slash + 1);
+            int end = i + 1;
+            while (end < to && paths.get(end).startsWith(prefix)) {
+                end++;
+            }
+            int nameEnd = slash;
+            if (compactPackages) {
+                // if the first and last entry share the next package, every entry in between does too
+                while (true) {
+                    int next = path.indexOf('/', nameEnd + 1);
+                    if (next == -1 || !paths.get(end - 1).startsWith(path.substring(0, next + 1))) {
+                        break;
+                    }
+                    nameEnd = next;
+                }
+            }
 
-                    if (i == split.length - 1) {
-                        next.setFlag(IS_LEAF, true);
+            String name = path.substring(offset, nameEnd);
+            TreeNode directory = parent.getChild(name);
+            if (directory == null) {
+                directory = parent.createChild(name);
+                directory.getMetadata().put(FULL_PATH_KEY, path.substring(0, nameEnd));
+                directory.getMetadata().put(OPENED_FILE, this);
+            }
+            build(directory, paths, i, end, nameEnd + 1);
+            i = end;
+        }
+    }
+
+    public void setCompactPackages(boolean compactPackages) {
+        this.compactPackages = compactPackages;
+    }
+
+    /**
+     * @return the node of the given entry, or of the directory if the path points to one
+     */
+    public TreeNode getNode(String path) {
+        TreeNode node = this.root;
+        String rest = path;
+        while (node != null && !rest.isEmpty()) {
+            int slash = rest.indexOf('/');
+            TreeNode next = node.getChild(slash == -1 ? rest : rest.substring(0, slash));
+            if (next == null) {
+                // packages may have been merged into one node
+                for (TreeNode child : node.getChildren()) {
+                    if (rest.equals(child.getDisplayName()) || rest.startsWith(child.getDisplayName() + "/")) {
+                        next = child;
+                        break;
                     }
                 }
-                now = next;
+            }
+            node = next;
+            if (node != null) {
+                String name = node.getDisplayName();
+                rest = rest.length() == name.length() ? "" : rest.substring(name.length() + 1);
             }
         }
+        return node;
     }
 
     public byte[] getContent(String path) {
@@ -98,31 +190,38 @@ public class OpenedFile {
         byte[] fileData;
 
         try {
+            this.sourceSize = Files.size(this.target);
+            this.sourceLastModified = Files.getLastModifiedTime(this.target).toMillis();
             fileData = Files.readAllBytes(this.target);
         } catch (IOException e) {
+            this.sourceSize = -1;
             this.messageHandler.handleException(Message.ERROR_IOEXCEPTION_OCCURRED.format(), e);
             return;
         }
 
-        this.fileContents.clear();
-        this.fileContents = new HashMap<>();
-
+        Map<String, byte[]> contents = new HashMap<>();
         try (ZipInputStream zipInputStream = new ZipInputStream(new ByteArrayInputStream(fileData))) {
             ZipEntry entry;
             while ((entry = zipInputStream.getNextEntry()) != null) {
                 // todo warn about CRC
                 if (!entry.isDirectory()) {
-                    this.fileContents.put(entry.getName(), IOUtils.toByteArray(zipInputStream));
+                    contents.put(entry.getName(), IOUtils.toByteArray(zipInputStream));
                 }
             }
+
+            // If files is still empty, then it's not a zip file (or something weird happened)
+            if (contents.size() == 0) {
+                contents.put(this.target.toString(), fileData);
+            }
         } catch (Exception ex) {
             this.messageHandler.handleException(Message.ERROR_UNKNOWN_ERROR.format(), ex);
-            return;
         }
 
-        // If files is still empty, then it's not a zip file (or something weird happened)
-        if (this.fileContents.size() == 0) {
-            this.fileContents.put(this.target.toString(), fileData);
+        synchronized (this.contentsLock) {
+            this.fileContents = contents;
+            this.modifiedPaths = new HashSet<>();
+            this.classIndex = null;
+            this.modifications.incrementAndGet();
         }
     }
 
@@ -131,6 +230,68 @@ public class OpenedFile {
     }
 
     public void putContent(String path, byte[] data) {
-        this.fileContents.put(path, data);
+        synchronized (this.contentsLock) {
+            this.fileContents.put(path, data);
+            this.modifiedPaths.add(path);
+            this.classIndex = null;
+            this.modifications.incrementAndGet();
+        }
+    }
+
+    /**
+     * @return whether the content at the given path was replaced after the file was read
+     */
+    public boolean isModified(String path) {
+        return this.modifiedPaths.contains(path);
+    }
+
+    public Set<String> getModifiedPaths() {
+        return Collections.unmodifiableSet(this.modifiedPaths);
+    }
+
+    /**
+     * @return whether the file on disk still looks like it did when it was read, so its entries can be copied from it
+     */
+    public boolean isSourceUnchanged() {
+        try {
+            return this.sourceSize != -1
+                    && Files.size(this.target) == this.sourceSize
+                    && Files.getLastModifiedTime(this.target).toMillis() == this.sourceLastModified;
+        } catch (IOException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * @return a counter which changes whenever the contents of this file change
+     */
+    public int getModificationCount() {
+        return this.modifications.get();
+    }
+
+    public String getPathOfClass(String internalName) {
+        Map<String, String> index = this.classIndex;
+        if (index == null) {
+            // Called from background threads, so the index is built from a copy and only kept if nothing changed since
+            Map<String, byte[]> contents;
+            int modification;
+            synchronized (this.contentsLock) {
+                contents = new HashMap<>(this.fileContents);
+                modification = this.modifications.get();
+            }
+            index = new HashMap<>();
+            for (Map.Entry<String, byte[]> entry : contents.entrySet()) {
+                String className = ClassReferences.getClassName(entry.getValue());
+                if (className != null) {
+                    index.putIfAbsent(className, entry.getKey());
+                }
+            }
+            synchronized (this.contentsLock) {
+                if (this.modifications.get() == modification) {
+                    this.classIndex = index;
+                }
+            }
+        }
+        return index.get(internalName);
     }
 }
@@ -19,21 +19,27 @@ package com.heliosdecompiler.helios.controller.files;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import com.heliosdecompiler.helios.Message;
+import com.heliosdecompiler.helios.Settings;
 import com.heliosdecompiler.helios.controller.RecentFileController;
 import com.heliosdecompiler.helios.controller.backgroundtask.BackgroundTask;
 import com.heliosdecompiler.helios.controller.backgroundtask.BackgroundTaskHelper;
 import com.heliosdecompiler.helios.gui.controller.FileTreeController;
 import com.heliosdecompiler.helios.ui.MessageHandler;
+import com.heliosdecompiler.helios.utils.SingleFlight;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableMap;
+import org.apache.commons.configuration2.Configuration;
 
 import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 
 @Singleton
 public class OpenedFileController {
     private ObservableMap<String, OpenedFile> loadedFiles = FXCollections.observableHashMap();
+    private final SingleFlight<String, OpenedFile> loads = new SingleFlight<>();
 
     @Inject
     private MessageHandler messageHandler;
@@ -44,15 +50,36 @@ public class OpenedFileController {
     @Inject
     private RecentFileController recentFileController;
 
+    @Inject
+    private Configuration configuration;
+
     public List<OpenedFile> getLoadedFiles() {
         return new ArrayList<>(this.loadedFiles.values());
     }
 
-    public void openFile(File selectedFile) {
+    /**
+     * Opening a file which is still being loaded does not load it a second time
+     *
+     * @return completes with the loaded file, or exceptionally if it could not be loaded
+     */
+    public CompletableFuture<OpenedFile> openFile(File selectedFile) {
         recentFileController.addRecentFile(selectedFile);
+        SingleFlight<String, OpenedFile>.Flight flight = loads.claim(selectedFile.getAbsolutePath());
+        if (!flight.isOwner()) {
+            return flight.getFuture();
+        }
         backgroundTaskHelper.submit(new BackgroundTask(Message.TASK_LOADING_FILE.format(selectedFile.getName()), true, () -> {
-            this.loadedFiles.put(selectedFile.getName(), new OpenedFile(messageHandler, selectedFile));
+            try {
+                OpenedFile openedFile = new OpenedFile(messageHandler, selectedFile, configuration.getBoolean(Settings.FILETREE_COMPACT_KEY, false));
+                this.loadedFiles.put(selectedFile.getName(), openedFile);
+                flight.complete(openedFile);
+            } finally {
+                flight.fail(new CancellationException());
+            }
+        }, () -> {
+            flight.fail(new CancellationException());
         }));
+        return flight.getFuture();
     }
 
     public ObservableMap<String, OpenedFile> loadedFiles() {
@@ -65,7 +92,9 @@ public class OpenedFileController {
 
     public void reload(FileTreeController controller) {
         backgroundTaskHelper.submit(new BackgroundTask(Message.TASK_RELOADING_FILES.format(), true, () -> {
+            boolean compact = configuration.getBoolean(Settings.FILETREE_COMPACT_KEY, false);
             for (OpenedFile openedFile : this.loadedFiles.values()) {
+                openedFile.setCompactPackages(compact);
                 openedFile.reset();
             }
             controller.updateTree();
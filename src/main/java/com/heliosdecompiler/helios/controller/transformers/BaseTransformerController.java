@@ -23,13 +23,16 @@ import org.apache.commons.configuration2.Configuration;
 import org.apache.commons.configuration2.XMLConfiguration;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 public abstract class BaseTransformerController<SettingObject> {
     @Inject
     private Configuration configuration;
 
     private List<Setting<?, SettingObject>> settings = new ArrayList<>();
+    private volatile SettingsSnapshot<SettingObject> snapshot;
 
     public TransformerType getTransformerType() {
         return transformerType;
@@ -68,18 +71,68 @@ public abstract class BaseTransformerController<SettingObject> {
         this.settings.sort((a, b) -> a.getId().compareToIgnoreCase(b.getId()));
     }
 
-    private <SettingType> void applySetting(SettingObject settingObject, Setting<SettingType, SettingObject> setting) {
-        setting.apply(settingObject, (SettingType) getSettingValue(setting));
+    protected SettingObject createSettings() {
+        SettingObject settingsObject = defaultSettings();
+        getSnapshot().applyTo(settingsObject);
+        return settingsObject;
     }
 
-    protected SettingObject createSettings() {
+    /**
+     * The snapshot is only rebuilt after {@link #setSettingValue(Setting, Object)} changes a value
+     */
+    public SettingsSnapshot<SettingObject> getSnapshot() {
+        SettingsSnapshot<SettingObject> current = snapshot;
+        if (current == null) {
+            synchronized (this) {
+                current = snapshot;
+                if (current == null) {
+                    current = takeSnapshot();
+                    snapshot = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    private SettingsSnapshot<SettingObject> takeSnapshot() {
+        Configuration configuration = getConfiguration();
+        Map<Setting<?, SettingObject>, Object> values = new LinkedHashMap<>();
+        Map<String, String> serialized = new LinkedHashMap<>();
+        for (Setting<?, SettingObject> setting : settings) {
+            String fromConfig = configuration.getString(setting.getId());
+            if (fromConfig == null) {
+                fromConfig = serializeDefault(setting);
+            }
+            values.put(setting, setting.getSerializer().deserialize(fromConfig));
+            serialized.put(setting.getId(), fromConfig);
+        }
+        return new SettingsSnapshot<>(values, serialized);
+    }
+
+    private <SettingType> String serializeDefault(Setting<SettingType, SettingObject> setting) {
+        return setting.getSerializer().serialize(setting.getDefault());
+    }
+
+    /**
+     * Creates the settings object from serialized values rather than the configuration, falling back to the default
+     * of every setting which has no value
+     */
+    public SettingObject createSettings(Map<String, String> serialized) {
         SettingObject settingsObject = defaultSettings();
         for (Setting<?, SettingObject> setting : settings) {
-            applySetting(settingsObject, setting);
+            applySerialized(settingsObject, setting, serialized.get(setting.getId()));
         }
         return settingsObject;
     }
 
+    private <SettingType> void applySerialized(SettingObject settingObject, Setting<SettingType, SettingObject> setting, String value) {
+        setting.apply(settingObject, value == null ? setting.getDefault() : setting.getSerializer().deserialize(value));
+    }
+
+    public Map<String, String> getSerializedSettings() {
+        return getSnapshot().getSerialized();
+    }
+
     public List<Setting<?, SettingObject>> getSettings() {
         return this.settings;
     }
@@ -87,18 +140,33 @@ public abstract class BaseTransformerController<SettingObject> {
     public <SettingType> SettingType getSettingValue(Setting<SettingType, SettingObject> setting) {
         String fromConfig = getConfiguration().getString(setting.getId());
         if (fromConfig == null) {
-            fromConfig = String.valueOf(setting.getDefault());
-            getConfiguration().setProperty(setting.getId(), fromConfig);
+            // Reading does not store the default, so a changed default still applies to settings nobody touched
+            fromConfig = serializeDefault(setting);
         }
         return setting.getSerializer().deserialize(fromConfig);
     }
 
     public <T> void setSettingValue(Setting<T, ?> setting, T value) {
         if (setting.isValid(value)) {
-            getConfiguration().setProperty(setting.getId(), setting.getSerializer().serialize(value));
+            String serialized = setting.getSerializer().serialize(value);
+            Configuration section = getConfiguration();
+            String current = section.getString(setting.getId());
+            if (current == null) {
+                current = setting.getSerializer().serialize(setting.getDefault());
+            }
+            // The settings dialog sets every value when it opens, which must not throw away cached results
+            if (serialized.equals(current)) {
+                return;
+            }
+            section.setProperty(setting.getId(), serialized);
+            snapshot = null;
+            onSettingsChanged();
         }
     }
 
+    protected void onSettingsChanged() {
+    }
+
     protected Configuration getConfiguration() {
         try {
             return ((XMLConfiguration) configuration).configurationAt(transformerType.getInternalName() + "." + internalName, true);
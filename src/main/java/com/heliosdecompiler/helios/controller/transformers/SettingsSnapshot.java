@@ -0,0 +1,69 @@
+/*
+ * Copyright 2017 Sam Sun <github-contact@samczsun.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.heliosdecompiler.helios.controller.transformers;
+
+import com.google.common.hash.Hashing;
+import com.heliosdecompiler.helios.controller.configuration.Setting;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * The values of every setting of a transformer at one point in time, already deserialized. Creating a settings object
+ * from a snapshot does not touch the configuration
+ */
+public final class SettingsSnapshot<SettingObject> {
+    private final Map<Setting<?, SettingObject>, Object> values;
+    private final Map<String, String> serialized;
+    private final String fingerprint;
+
+    SettingsSnapshot(Map<Setting<?, SettingObject>, Object> values, Map<String, String> serialized) {
+        this.values = Collections.unmodifiableMap(new LinkedHashMap<>(values));
+        this.serialized = Collections.unmodifiableMap(new LinkedHashMap<>(serialized));
+
+        StringBuilder canonical = new StringBuilder();
+        for (Map.Entry<String, String> entry : new TreeMap<>(serialized).entrySet()) {
+            canonical.append(entry.getKey()).append('=').append(entry.getValue()).append('\n');
+        }
+        this.fingerprint = Hashing.murmur3_128().hashString(canonical, StandardCharsets.UTF_8).toString();
+    }
+
+    void applyTo(SettingObject settingObject) {
+        for (Map.Entry<Setting<?, SettingObject>, Object> entry : values.entrySet()) {
+            apply(settingObject, entry.getKey(), entry.getValue());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <SettingType, SettingObject> void apply(SettingObject settingObject, Setting<SettingType, SettingObject> setting, Object value) {
+        setting.apply(settingObject, (SettingType) value);
+    }
+
+    /**
+     * @return every setting id mapped to its value as stored in the configuration
+     */
+    public Map<String, String> getSerialized() {
+        return serialized;
+    }
+
+    /**
+     * @return a hash of every setting value, equal for equal snapshots
+     */
+    public String getFingerprint() {
+        return fingerprint;
+    }
+}
@@ -28,6 +28,7 @@ import org.benf.cfr.reader.util.getopt.OptionsImpl;
 import org.benf.cfr.reader.util.getopt.PermittedOptionProvider;
 
 import java.lang.reflect.Field;
+import java.util.Optional;
 
 @Singleton
 public class CFRDecompilerController extends DecompilerController<CFRSettings> {
@@ -41,6 +42,17 @@ public class CFRDecompilerController extends DecompilerController<CFRSettings> {
         return getDecompiler().defaultSettings();
     }
 
+    @Override
+    public boolean supportsMethodScope() {
+        return true;
+    }
+
+    @Override
+    public Optional<CFRSettings> scopeToMethod(CFRSettings settings, String methodName) {
+        settings.set(OptionsImpl.METHODNAME.getName(), methodName);
+        return Optional.of(settings);
+    }
+
     @Override
     protected void registerSettings() {
         registerSetting(Boolean.class, new RawBooleanSetting(OptionsImpl.SUGAR_STRINGBUFFER, true));
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2017 Sam Sun <github-contact@samczsun.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.heliosdecompiler.helios.controller.transformers.decompilers;
+
+import com.heliosdecompiler.helios.controller.backgroundtask.BackgroundTask;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+
+/**
+ * A pending call to {@link DecompilerController#decompile}. Cancelling it stops the underlying decompilation once no
+ * other request depends on it
+ */
+public class DecompileRequest {
+    final String path;
+    private final BiConsumer<Boolean, String> consumer;
+    String internalName;
+
+    private volatile boolean cancelled;
+    private volatile boolean done;
+    private volatile Batch batch;
+
+    DecompileRequest(String path, BiConsumer<Boolean, String> consumer) {
+        this.path = path;
+        this.consumer = consumer;
+    }
+
+    public void cancel() {
+        if (done || cancelled) {
+            return;
+        }
+        cancelled = true;
+        Batch batch = this.batch;
+        if (batch != null && batch.task != null && batch.isCancelled()) {
+            batch.task.cancel();
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public boolean isDone() {
+        return done;
+    }
+
+    void respond(boolean success, String text) {
+        if (!done && !cancelled) {
+            done = true;
+            consumer.accept(success, text);
+        }
+    }
+
+    void setBatch(Batch batch) {
+        this.batch = batch;
+    }
+
+    static class Batch {
+        final List<DecompileRequest> requests;
+        BackgroundTask task;
+        private final AtomicBoolean finished = new AtomicBoolean();
+
+        Batch(List<DecompileRequest> requests) {
+            this.requests = requests;
+        }
+
+        /**
+         * Moves a request which waits on this batch's result over from the batch it came from, so that cancelling
+         * the requests this batch started with does not abort it while someone else still needs it
+         */
+        void attach(DecompileRequest request) {
+            Batch previous = request.batch;
+            if (previous != null && previous != this) {
+                synchronized (previous.requests) {
+                    previous.requests.remove(request);
+                }
+            }
+            synchronized (requests) {
+                requests.add(request);
+            }
+            request.setBatch(this);
+        }
+
+        /**
+         * @return true only for the first call, however the batch ended
+         */
+        boolean finish() {
+            return finished.compareAndSet(false, true);
+        }
+
+        boolean isCancelled() {
+            synchronized (requests) {
+                for (DecompileRequest request : requests) {
+                    if (!request.cancelled && !request.done) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+    }
+}
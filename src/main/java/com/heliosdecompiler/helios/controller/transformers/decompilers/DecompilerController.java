@@ -16,32 +16,74 @@
 
 package com.heliosdecompiler.helios.controller.transformers.decompilers;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.inject.Inject;
 import com.heliosdecompiler.helios.Message;
+import com.heliosdecompiler.helios.Settings;
 import com.heliosdecompiler.helios.controller.PathController;
 import com.heliosdecompiler.helios.controller.backgroundtask.BackgroundTask;
 import com.heliosdecompiler.helios.controller.backgroundtask.BackgroundTaskHelper;
+import com.heliosdecompiler.helios.controller.classpath.ClassReferences;
+import com.heliosdecompiler.helios.controller.classpath.ClasspathMap;
+import com.heliosdecompiler.helios.controller.classpath.ClasspathSource;
+import com.heliosdecompiler.helios.controller.classpath.OpenedFileClasspathSource;
 import com.heliosdecompiler.helios.controller.files.OpenedFile;
 import com.heliosdecompiler.helios.controller.transformers.BaseTransformerController;
 import com.heliosdecompiler.helios.controller.transformers.TransformerType;
+import com.heliosdecompiler.helios.controller.transformers.decompilers.worker.DecompilerWorkerPool;
+import com.heliosdecompiler.helios.controller.transformers.decompilers.worker.WorkerResult;
+import com.heliosdecompiler.helios.utils.Outcome;
+import com.heliosdecompiler.helios.utils.SingleFlight;
 import com.heliosdecompiler.transformerapi.ClassData;
 import com.heliosdecompiler.transformerapi.TransformationResult;
 import com.heliosdecompiler.transformerapi.decompilers.Decompiler;
-import org.apache.commons.lang3.StringEscapeUtils;
+import org.apache.commons.configuration2.Configuration;
 
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiConsumer;
 
 public abstract class DecompilerController<SettingObject> extends BaseTransformerController<SettingObject> {
+    private static final int DEFAULT_CLASSPATH_DEPTH = 2;
+    private static final long COALESCE_MILLIS = 50;
+
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "Decompiler Batch Timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Inject
+    private Configuration configuration;
     @Inject
     private PathController pathController;
     @Inject
     private BackgroundTaskHelper backgroundTaskHelper;
+    @Inject
+    private DecompilerWorkerPool workerPool;
 
     private Decompiler<SettingObject> decompiler;
 
+    private final Map<OpenedFile, DecompileRequest.Batch> pending = new HashMap<>();
+    private final AtomicInteger interactive = new AtomicInteger();
+    private final SingleFlight<List<Object>, Outcome> flights = new SingleFlight<>();
+    // The batch whose task computes each running flight, which requests joining that flight are attached to
+    private final Map<CompletableFuture<Outcome>, DecompileRequest.Batch> flightBatches = new ConcurrentHashMap<>();
+
+    private final Cache<OpenedFile, DecompilerSession> sessions = CacheBuilder.newBuilder()
+            .maximumSize(8)
+            .softValues()
+            .build();
+
     public DecompilerController(String name, String id, Decompiler<SettingObject> decompiler) {
         super(TransformerType.DECOMPILER, id, name);
         this.decompiler = decompiler;
@@ -51,77 +93,431 @@ public abstract class DecompilerController<SettingObject> extends BaseTransforme
         return decompiler;
     }
 
-    public void decompile(OpenedFile file, String path, BiConsumer<Boolean, String> consumer) {
-        backgroundTaskHelper.submit(new BackgroundTask(Message.TASK_DECOMPILE_FILE.format(path, getDisplayName()), true, () -> {
+    /**
+     * Requests for the same file which arrive within a short window of each other are decompiled in a single
+     * invocation, and every class the decompiler produces is cached for later requests
+     */
+    public DecompileRequest decompile(OpenedFile file, String path, BiConsumer<Boolean, String> consumer) {
+        DecompileRequest request = new DecompileRequest(path, consumer);
+
+        String cached = peekResult(file, path, null);
+        if (cached != null) {
+            request.respond(true, cached);
+            return request;
+        }
+        if (join(getFlightKey(file, path, null), request)) {
+            return request;
+        }
+
+        DecompileRequest.Batch batch;
+        boolean schedule;
+        synchronized (pending) {
+            batch = pending.get(file);
+            schedule = batch == null;
+            if (schedule) {
+                batch = new DecompileRequest.Batch(new ArrayList<>());
+                pending.put(file, batch);
+            }
+            synchronized (batch.requests) {
+                batch.requests.add(request);
+            }
+            request.setBatch(batch);
+        }
+
+        if (schedule) {
+            DecompileRequest.Batch scheduled = batch;
+            interactive.incrementAndGet();
+            scheduled.task = new BackgroundTask(Message.TASK_DECOMPILE_FILE.format(path, getDisplayName()), true, () -> {
+                synchronized (pending) {
+                    pending.remove(file, scheduled);
+                }
+                try {
+                    decompileBatch(file, scheduled);
+                } finally {
+                    finish(scheduled);
+                }
+            }, () -> {
+                synchronized (pending) {
+                    pending.remove(file, scheduled);
+                }
+                finish(scheduled);
+                for (DecompileRequest cancelled : getRequests(scheduled)) {
+                    cancelled.respond(false, "Decompilation aborted");
+                }
+            });
+            // Stays open to further requests for the same file until the window closes
+            TIMER.schedule(() -> backgroundTaskHelper.submit(scheduled.task), COALESCE_MILLIS, TimeUnit.MILLISECONDS);
+        }
+        return request;
+    }
+
+    private void finish(DecompileRequest.Batch batch) {
+        if (batch.finish()) {
+            interactive.decrementAndGet();
+        }
+    }
+
+    /**
+     * @return whether a decompilation requested by the user is queued or running
+     */
+    public boolean hasInteractiveWork() {
+        return interactive.get() > 0;
+    }
+
+    public boolean isCached(OpenedFile file, String path) {
+        return peekResult(file, path, null) != null;
+    }
+
+    /**
+     * Only looks at a session which is already built, since building one resolves the classpath and requests usually
+     * come from the FX thread. A session which does not exist or is stale has no results anyway
+     */
+    private String peekResult(OpenedFile file, String path, String methodName) {
+        DecompilerSession session;
+        synchronized (sessions) {
+            session = sessions.getIfPresent(file);
+        }
+        if (session == null || !session.isValid(pathController.getGeneration()) || session.isEmpty()) {
+            return null;
+        }
+        String internalName = ClassReferences.getClassName(file.getContent(path));
+        if (internalName == null) {
+            return null;
+        }
+        return methodName == null ? session.getResult(internalName) : session.getMethodResult(internalName, methodName);
+    }
+
+    /**
+     * Decompiles the class on the calling thread purely to fill the result cache
+     */
+    public void prefetch(OpenedFile file, String path) {
+        if (isCached(file, path)) {
+            return;
+        }
+        DecompileRequest request = new DecompileRequest(path, (success, text) -> {
+        });
+        DecompileRequest.Batch batch = new DecompileRequest.Batch(new ArrayList<>(Collections.singletonList(request)));
+        request.setBatch(batch);
+        decompileBatch(file, batch);
+    }
+
+    private List<DecompileRequest> getRequests(DecompileRequest.Batch batch) {
+        synchronized (batch.requests) {
+            return new ArrayList<>(batch.requests);
+        }
+    }
+
+    private void decompileBatch(OpenedFile file, DecompileRequest.Batch batch) {
+        Map<String, ClassData> targets = new LinkedHashMap<>();
+        Map<String, byte[]> targetData = new LinkedHashMap<>();
+        Map<String, SingleFlight<List<Object>, Outcome>.Flight> owned = new HashMap<>();
+        List<DecompileRequest> accepted = new ArrayList<>();
+        for (DecompileRequest request : getRequests(batch)) {
+            if (request.isCancelled()) {
+                continue;
+            }
+            String pre = preDecompile(file, request.path);
+            if (pre != null) {
+                request.respond(false, pre);
+                continue;
+            }
+            byte[] data = file.getContent(request.path);
+            ClassData cd = ClassData.construct(data);
+            request.internalName = cd.getInternalName();
+            // The cache could only be peeked at when the request was made
+            String cached = getSession(file).getResult(cd.getInternalName());
+            if (cached != null) {
+                request.respond(true, cached);
+                continue;
+            }
+            if (!owned.containsKey(cd.getInternalName())) {
+                // Someone else may have started on the same class since this request was queued
+                SingleFlight<List<Object>, Outcome>.Flight flight = flights.claim(getFlightKey(file, request.path, null));
+                if (!flight.isOwner()) {
+                    attach(flight.getFuture(), request);
+                    continue;
+                }
+                owned.put(cd.getInternalName(), flight);
+                flightBatches.put(flight.getFuture(), batch);
+                targets.put(cd.getInternalName(), cd);
+                targetData.put(cd.getInternalName(), data);
+            }
+            accepted.add(request);
+        }
+        if (accepted.isEmpty()) {
+            return;
+        }
+
+        try {
+            DecompilerSession session = getSession(file);
+            Output output = run(session, getClasspath(file, targets.values()), targets.values(), targetData.values(), null);
+            session.putResults(output.results);
+
+            for (Map.Entry<String, SingleFlight<List<Object>, Outcome>.Flight> entry : owned.entrySet()) {
+                String result = output.results.get(entry.getKey());
+                entry.getValue().complete(result != null ? new Outcome(true, result) : new Outcome(false, output.describeFailure()));
+            }
+        } catch (Throwable e) {
+            Outcome failure = new Outcome(false, describeFailure(e));
+            for (SingleFlight<List<Object>, Outcome>.Flight flight : owned.values()) {
+                flight.complete(failure);
+            }
+        } finally {
+            // Only reached with flights still open when the thread was stopped
+            for (SingleFlight<List<Object>, Outcome>.Flight flight : owned.values()) {
+                flight.fail(new CancellationException());
+                flightBatches.remove(flight.getFuture());
+            }
+        }
+
+        for (DecompileRequest request : accepted) {
+            Outcome outcome = owned.get(request.internalName).getFuture().getNow(null);
+            if (outcome != null) {
+                request.respond(outcome.isSuccess(), outcome.getText());
+            }
+        }
+    }
+
+    /**
+     * Identifies identical work: the same class, unmodified since, decompiled by the same engine with the same
+     * settings. Cheap enough to build on the FX thread, unlike hashing the class
+     */
+    private List<Object> getFlightKey(OpenedFile file, String path, String methodName) {
+        return Arrays.asList(file, path, file.getModificationCount(), getInternalName(), getSnapshot().getFingerprint(), methodName);
+    }
+
+    /**
+     * @return whether the request was attached to an identical decompilation which is already running
+     */
+    private boolean join(List<Object> key, DecompileRequest request) {
+        CompletableFuture<Outcome> running = flights.get(key);
+        if (running == null) {
+            return false;
+        }
+        attach(running, request);
+        return true;
+    }
+
+    private void attach(CompletableFuture<Outcome> running, DecompileRequest request) {
+        DecompileRequest.Batch owner = flightBatches.get(running);
+        if (owner != null) {
+            owner.attach(request);
+        }
+        running.whenComplete((outcome, failure) -> {
+            if (outcome != null) {
+                request.respond(outcome.isSuccess(), outcome.getText());
+            } else {
+                request.respond(false, "Decompilation aborted");
+            }
+        });
+    }
+
+    public boolean supportsMethodScope() {
+        return false;
+    }
+
+    /**
+     * Narrows settings made by {@link #createSettings()} down to the methods with the given name
+     *
+     * @return empty if this decompiler cannot do that, see {@link #supportsMethodScope()}, in which case the whole
+     * class is decompiled instead
+     */
+    public Optional<SettingObject> scopeToMethod(SettingObject settings, String methodName) {
+        return Optional.empty();
+    }
+
+    /**
+     * Decompiles only the methods with the given name, which is much faster than the whole class for huge classes.
+     * Results are cached per method
+     */
+    public DecompileRequest decompileMethod(OpenedFile file, String path, String methodName, BiConsumer<Boolean, String> consumer) {
+        DecompileRequest request = new DecompileRequest(path, consumer);
+
+        String cached = peekResult(file, path, methodName);
+        if (cached != null) {
+            request.respond(true, cached);
+            return request;
+        }
+        if (join(getFlightKey(file, path, methodName), request)) {
+            return request;
+        }
+
+        byte[] data = file.getContent(path);
+
+        DecompileRequest.Batch batch = new DecompileRequest.Batch(new ArrayList<>(Collections.singletonList(request)));
+        request.setBatch(batch);
+        interactive.incrementAndGet();
+        batch.task = new BackgroundTask(Message.TASK_DECOMPILE_METHOD.format(methodName, path, getDisplayName()), true, () -> {
             try {
-                String pre = preDecompile(file, path);
-                if (pre != null) {
-                    consumer.accept(false, pre);
+                decompileMethod0(file, batch, request, data, methodName);
+            } finally {
+                finish(batch);
+            }
+        }, () -> {
+            finish(batch);
+            for (DecompileRequest cancelled : getRequests(batch)) {
+                cancelled.respond(false, "Decompilation aborted");
+            }
+        });
+        backgroundTaskHelper.submit(batch.task);
+        return request;
+    }
+
+    private void decompileMethod0(OpenedFile file, DecompileRequest.Batch batch, DecompileRequest request, byte[] data, String methodName) {
+        String pre = preDecompile(file, request.path);
+        if (pre != null) {
+            request.respond(false, pre);
+            return;
+        }
+
+        String internalName = ClassReferences.getClassName(data);
+        String cached = internalName == null ? null : getSession(file).getMethodResult(internalName, methodName);
+        if (cached != null) {
+            request.respond(true, cached);
+            return;
+        }
+
+        SingleFlight<List<Object>, Outcome>.Flight flight = flights.claim(getFlightKey(file, request.path, methodName));
+        if (!flight.isOwner()) {
+            attach(flight.getFuture(), request);
+            return;
+        }
+        flightBatches.put(flight.getFuture(), batch);
+
+        try {
+            Outcome outcome;
+            try {
+                ClassData cd = ClassData.construct(data);
+                DecompilerSession session = getSession(file);
+                List<ClassData> targets = Collections.singletonList(cd);
+                Output output = run(session, getClasspath(file, targets), targets, Collections.singletonList(data), methodName);
+
+                String result = output.results.get(cd.getInternalName());
+                if (result != null) {
+                    session.putMethodResult(cd.getInternalName(), methodName, result);
+                    outcome = new Outcome(true, result);
                 } else {
-                    byte[] data = file.getContent(path);
-                    ClassData cd = ClassData.construct(data);
-
-                    TransformationResult<String> transformationResult = decompiler.decompile(Collections.singleton(cd), createSettings(), getClasspath(file));
-
-                    Map<String, String> results = transformationResult.getTransformationData();
-
-                    System.out.println("Results: " + results.keySet());
-                    System.out.println("Looking for: " + StringEscapeUtils.escapeJava(cd.getInternalName()));
-
-                    if (results.containsKey(cd.getInternalName())) {
-                        consumer.accept(true, results.get(cd.getInternalName()));
-                    } else {
-                        StringBuilder output = new StringBuilder();
-                        output.append("An error has occurred while decompiling this file.\r\n")
-                                .append("If you have not tried another decompiler, try that. Otherwise, you're out of luck.\r\n\r\n")
-                                .append("stdout:\r\n")
-                                .append(transformationResult.getStdout())
-                                .append("\r\nstderr:\r\n")
-                                .append(transformationResult.getStderr());
-                        consumer.accept(false, output.toString());
-                    }
+                    outcome = new Outcome(false, output.describeFailure());
                 }
             } catch (Throwable e) {
-                StringWriter writer = new StringWriter();
-                e.printStackTrace(new PrintWriter(writer));
-
-                StringBuilder output = new StringBuilder();
-                output.append("An error has occurred while decompiling this file.\r\n")
-                        .append("If you have not tried another decompiler, try that. Otherwise, you're out of luck.\r\n\r\n")
-                        .append("Exception:\r\n")
-                        .append(writer.toString());
-                consumer.accept(false, output.toString());
+                outcome = new Outcome(false, describeFailure(e));
             }
-        }, () -> {
-            consumer.accept(false, "Decompilation aborted");
-        }));
+            flight.complete(outcome);
+            for (DecompileRequest waiting : getRequests(batch)) {
+                waiting.respond(outcome.isSuccess(), outcome.getText());
+            }
+        } finally {
+            flight.fail(new CancellationException());
+            flightBatches.remove(flight.getFuture());
+        }
+    }
+
+    private Output run(DecompilerSession session, ClasspathMap classpath, Collection<ClassData> targets, Collection<byte[]> targetData, String methodName) throws Exception {
+        if (supportsWorkers() && workerPool.isEnabled()) {
+            WorkerResult result = workerPool.decompile(getInternalName(), getSerializedSettings(), methodName, session.getId(), classpath, targetData);
+            return new Output(result.getResults(), result.getStdout(), result.getStderr());
+        }
+        SettingObject settings = createSettings();
+        if (methodName != null) {
+            settings = scopeToMethod(settings, methodName).orElse(settings);
+        }
+        TransformationResult<String> result = decompiler.decompile(targets, settings, classpath);
+        return new Output(result.getTransformationData(), result.getStdout(), result.getStderr());
     }
 
-    protected Map<String, ClassData> getClasspath(OpenedFile thisFile) {
-        Map<String, ClassData> map = new HashMap<>();
+    private static String describeFailure(Throwable e) {
+        StringWriter writer = new StringWriter();
+        e.printStackTrace(new PrintWriter(writer));
 
-        for (Map.Entry<String, byte[]> ent : thisFile.getContents().entrySet()) {
-            ClassData data = ClassData.construct(ent.getValue());
-            if (data != null && !map.containsKey(data.getInternalName())) {
-                map.put(data.getInternalName(), data);
+        StringBuilder output = new StringBuilder();
+        output.append("An error has occurred while decompiling this file.\r\n")
+                .append("If you have not tried another decompiler, try that. Otherwise, you're out of luck.\r\n\r\n")
+                .append("Exception:\r\n")
+                .append(writer.toString());
+        return output.toString();
+    }
+
+    private static class Output {
+        private final Map<String, String> results;
+        private final String stdout;
+        private final String stderr;
+
+        Output(Map<String, String> results, String stdout, String stderr) {
+            this.results = results;
+            this.stdout = stdout;
+            this.stderr = stderr;
+        }
+
+        String describeFailure() {
+            StringBuilder output = new StringBuilder();
+            output.append("An error has occurred while decompiling this file.\r\n")
+                    .append("If you have not tried another decompiler, try that. Otherwise, you're out of luck.\r\n\r\n")
+                    .append("stdout:\r\n")
+                    .append(stdout)
+                    .append("\r\nstderr:\r\n")
+                    .append(stderr);
+            return output.toString();
+        }
+    }
+
+    /**
+     * Only the classes reachable from the ones being decompiled, up to the configured depth, are resolved up front.
+     * Anything else the decompiler asks for is still looked up by name
+     */
+    protected ClasspathMap getClasspath(OpenedFile thisFile, Collection<ClassData> targets) {
+        List<String> roots = new ArrayList<>();
+        for (ClassData target : targets) {
+            roots.add(target.getInternalName());
+        }
+        return getSession(thisFile).newClasspath().resolve(roots, getClasspathDepth());
+    }
+
+    /**
+     * @return how many levels of references are resolved up front, or a negative number to follow all of them
+     */
+    protected int getClasspathDepth() {
+        return configuration.getInt(Settings.CLASSPATH_DEPTH_KEY, DEFAULT_CLASSPATH_DEPTH);
+    }
+
+    protected DecompilerSession getSession(OpenedFile file) {
+        synchronized (sessions) {
+            DecompilerSession session = sessions.getIfPresent(file);
+            int generation = pathController.getGeneration();
+            if (session == null || !session.isValid(generation)) {
+                session = new DecompilerSession(file, generation, getClasspathSources(file));
+                sessions.put(file, session);
             }
+            return session;
         }
+    }
 
+    protected List<ClasspathSource> getClasspathSources(OpenedFile thisFile) {
+        List<ClasspathSource> sources = new ArrayList<>();
+        sources.add(new OpenedFileClasspathSource(thisFile));
         for (OpenedFile file : pathController.getOpenedFiles()) {
-            for (Map.Entry<String, byte[]> ent : file.getContents().entrySet()) {
-                ClassData data = ClassData.construct(ent.getValue());
-                if (data != null && !map.containsKey(data.getInternalName())) {
-                    map.put(data.getInternalName(), data);
-                }
-            }
+            sources.add(new OpenedFileClasspathSource(file));
         }
+        sources.addAll(pathController.getSources());
+        return sources;
+    }
 
-        return map;
+    /**
+     * Whether this decompiler can run in a {@link DecompilerWorkerPool} worker, which only knows about its settings
+     * and the classes it is sent
+     */
+    protected boolean supportsWorkers() {
+        return true;
     }
+
+    @Override
+    protected void onSettingsChanged() {
+        // Cached results were produced with the old settings
+        sessions.invalidateAll();
+    }
+
     protected String preDecompile(OpenedFile file, String path) {
         byte[] data = file.getContent(path);
         ClassData cd = ClassData.construct(data);
         return cd == null ? "Could not decompile - are you sure that's a class file?" : null;
     }
-
 }
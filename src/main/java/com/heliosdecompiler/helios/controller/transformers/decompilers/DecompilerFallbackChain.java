@@ -0,0 +1,162 @@
+/*
+ * Copyright 2017 Sam Sun <github-contact@samczsun.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.heliosdecompiler.helios.controller.transformers.decompilers;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.heliosdecompiler.helios.Settings;
+import com.heliosdecompiler.helios.controller.files.OpenedFile;
+import org.apache.commons.configuration2.Configuration;
+
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * Tries each decompiler in the configured order until one of them succeeds. Every decompiler gets its own time budget,
+ * after which it is cancelled and the next one is tried
+ */
+@Singleton
+public class DecompilerFallbackChain {
+    private static final String DEFAULT_CHAIN = "cfr,procyon,fernflower,krakatau";
+    private static final long DEFAULT_TIMEOUT = 30000;
+
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "Decompiler Fallback Timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Inject
+    private Configuration configuration;
+
+    private final Map<String, DecompilerController<?>> controllers = new LinkedHashMap<>();
+
+    @Inject
+    public DecompilerFallbackChain(CFRDecompilerController cfr, ProcyonDecompilerController procyon,
+                                   FernflowerDecompilerController fernflower, KrakatauDecompilerController krakatau) {
+        for (DecompilerController<?> controller : Arrays.asList(cfr, procyon, fernflower, krakatau)) {
+            controllers.put(controller.getInternalName(), controller);
+        }
+    }
+
+    /**
+     * The decompilers to try, in order. Unknown names in the configuration are ignored
+     */
+    public List<DecompilerController<?>> getChain() {
+        List<DecompilerController<?>> chain = new ArrayList<>();
+        for (String name : configuration.getString(Settings.FALLBACK_CHAIN_KEY, DEFAULT_CHAIN).split(",")) {
+            DecompilerController<?> controller = controllers.get(name.trim());
+            if (controller != null && !chain.contains(controller)) {
+                chain.add(controller);
+            }
+        }
+        if (chain.isEmpty()) {
+            chain.addAll(controllers.values());
+        }
+        return chain;
+    }
+
+    public long getTimeout(DecompilerController<?> controller) {
+        long timeout = configuration.getLong(Settings.FALLBACK_TIMEOUT_KEY, DEFAULT_TIMEOUT);
+        return configuration.getLong(Settings.FALLBACK_TIMEOUT_KEY + "." + controller.getInternalName(), timeout);
+    }
+
+    /**
+     * The consumer is called exactly once, with the first successful output prefixed by a note naming the decompiler
+     * that produced it, or with every failure if none succeeded
+     */
+    public void decompile(OpenedFile file, String path, BiConsumer<Boolean, String> consumer) {
+        new Attempt(file, path, getChain(), consumer).next();
+    }
+
+    private class Attempt {
+        private final OpenedFile file;
+        private final String path;
+        private final Iterator<DecompilerController<?>> remaining;
+        private final BiConsumer<Boolean, String> consumer;
+        private final StringBuilder failures = new StringBuilder();
+        private final List<String> skipped = new ArrayList<>();
+
+        private DecompileRequest current;
+        private ScheduledFuture<?> timeout;
+
+        Attempt(OpenedFile file, String path, List<DecompilerController<?>> chain, BiConsumer<Boolean, String> consumer) {
+            this.file = file;
+            this.path = path;
+            this.remaining = chain.iterator();
+            this.consumer = consumer;
+        }
+
+        synchronized void next() {
+            if (!remaining.hasNext()) {
+                consumer.accept(false, "None of the decompilers could decompile this file.\r\n\r\n" + failures);
+                return;
+            }
+            DecompilerController<?> controller = remaining.next();
+            long budget = getTimeout(controller);
+            DecompileRequest[] request = new DecompileRequest[1];
+            request[0] = controller.decompile(file, path, (success, text) -> onResult(request[0], controller, success, text));
+            if (request[0].isDone()) {
+                return;
+            }
+            current = request[0];
+            if (budget > 0) {
+                timeout = TIMER.schedule(() -> onTimeout(request[0], controller, budget), budget, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        synchronized void onResult(DecompileRequest request, DecompilerController<?> controller, boolean success, String text) {
+            if (request != null && request != current) {
+                return;
+            }
+            current = null;
+            if (timeout != null) {
+                timeout.cancel(false);
+                timeout = null;
+            }
+            if (success) {
+                StringBuilder note = new StringBuilder("// Decompiled using ").append(controller.getDisplayName());
+                if (!skipped.isEmpty()) {
+                    note.append(" (").append(String.join(", ", skipped)).append(" failed)");
+                }
+                consumer.accept(true, note.append("\r\n").append(text).toString());
+            } else {
+                failure(controller, text);
+            }
+        }
+
+        synchronized void onTimeout(DecompileRequest request, DecompilerController<?> controller, long budget) {
+            if (request != current || request.isDone()) {
+                return;
+            }
+            current = null;
+            timeout = null;
+            request.cancel();
+            failure(controller, "Timed out after " + budget + "ms");
+        }
+
+        private void failure(DecompilerController<?> controller, String text) {
+            skipped.add(controller.getDisplayName());
+            failures.append("=== ").append(controller.getDisplayName()).append(" ===\r\n").append(text).append("\r\n\r\n");
+            next();
+        }
+    }
+}
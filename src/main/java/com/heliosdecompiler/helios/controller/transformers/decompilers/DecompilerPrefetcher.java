@@ -0,0 +1,218 @@
+/*
+ * Copyright 2017 Sam Sun <github-contact@samczsun.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.heliosdecompiler.helios.controller.transformers.decompilers;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.heliosdecompiler.helios.Settings;
+import com.heliosdecompiler.helios.controller.classpath.ClassReferences;
+import com.heliosdecompiler.helios.controller.files.OpenedFile;
+import org.apache.commons.configuration2.Configuration;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.*;
+
+/**
+ * Decompiles the classes the user is likely to open next into the decompilers' result caches. Candidates are the
+ * classes referenced by an opened class followed by its neighbours in the same package. The work happens on a single
+ * low priority thread which backs off while the user is waiting on a decompiler, while the heap is nearly full or
+ * while the machine is busy
+ */
+@Singleton
+public class DecompilerPrefetcher {
+    private static final int MAX_QUEUED = 64;
+    private static final int MAX_PER_CLASS = 16;
+    private static final int NEIGHBOURS = 4;
+    private static final double MAX_HEAP_USAGE = 0.75;
+    private static final long BACKOFF = 500;
+
+    @Inject
+    private Configuration configuration;
+
+    private final Deque<Candidate> queue = new ArrayDeque<>();
+    private final Deque<Candidate> opened = new ArrayDeque<>();
+    private final Set<DecompilerController<?>> controllers = Collections.newSetFromMap(new WeakHashMap<>());
+    private final OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+    private Thread thread;
+
+    /**
+     * Called whenever a class is opened with a decompiler. Predicting what comes next happens on the prefetch thread
+     */
+    public void onOpened(DecompilerController<?> controller, OpenedFile file, String path) {
+        if (!configuration.getBoolean(Settings.PREFETCH_ENABLED_KEY, true)) {
+            return;
+        }
+        synchronized (queue) {
+            controllers.add(controller);
+            opened.add(new Candidate(controller, file, path));
+            if (thread == null) {
+                thread = new Thread(this::run, "Decompiler Prefetch");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                thread.start();
+            }
+            queue.notifyAll();
+        }
+    }
+
+    private void enqueueCandidates(Candidate source) {
+        byte[] data = source.file.getContent(source.path);
+        if (ClassReferences.getClassName(data) == null) {
+            return;
+        }
+
+        Set<String> candidates = new LinkedHashSet<>();
+        for (String reference : ClassReferences.getReferences(data)) {
+            String referencePath = source.file.getPathOfClass(reference);
+            if (referencePath != null) {
+                candidates.add(referencePath);
+            }
+        }
+        candidates.addAll(getNeighbours(source.file, source.path));
+        candidates.remove(source.path);
+
+        // The most recently opened class matters most, so its candidates go to the front
+        List<Candidate> added = new ArrayList<>();
+        for (String candidate : candidates) {
+            if (added.size() >= MAX_PER_CLASS) {
+                break;
+            }
+            added.add(new Candidate(source.controller, source.file, candidate));
+        }
+        Collections.reverse(added);
+        synchronized (queue) {
+            for (Candidate candidate : added) {
+                queue.remove(candidate);
+                queue.addFirst(candidate);
+            }
+            while (queue.size() > MAX_QUEUED) {
+                queue.removeLast();
+            }
+        }
+    }
+
+    private List<String> getNeighbours(OpenedFile file, String path) {
+        String directory = path.substring(0, path.lastIndexOf('/') + 1);
+        List<String> siblings = new ArrayList<>();
+        for (String entry : file.getContents().keySet()) {
+            if (entry.endsWith(".class") && entry.startsWith(directory) && entry.indexOf('/', directory.length()) == -1) {
+                siblings.add(entry);
+            }
+        }
+        Collections.sort(siblings);
+
+        List<String> neighbours = new ArrayList<>();
+        int index = Collections.binarySearch(siblings, path);
+        if (index < 0) {
+            return neighbours;
+        }
+        for (int distance = 1; distance <= NEIGHBOURS; distance++) {
+            if (index + distance < siblings.size()) {
+                neighbours.add(siblings.get(index + distance));
+            }
+            if (index - distance >= 0) {
+                neighbours.add(siblings.get(index - distance));
+            }
+        }
+        return neighbours;
+    }
+
+    private void run() {
+        while (true) {
+            Candidate candidate;
+            try {
+                Candidate source;
+                synchronized (queue) {
+                    while (queue.isEmpty() && opened.isEmpty()) {
+                        queue.wait();
+                    }
+                    source = opened.pollFirst();
+                }
+                if (source != null) {
+                    try {
+                        enqueueCandidates(source);
+                    } catch (RuntimeException ignored) {
+                    }
+                    continue;
+                }
+                if (shouldBackOff()) {
+                    Thread.sleep(BACKOFF);
+                    continue;
+                }
+                synchronized (queue) {
+                    candidate = queue.pollFirst();
+                }
+            } catch (InterruptedException ex) {
+                return;
+            }
+
+            if (candidate == null || !candidate.file.getContents().containsKey(candidate.path)) {
+                continue;
+            }
+            try {
+                candidate.controller.prefetch(candidate.file, candidate.path);
+            } catch (Throwable t) {
+                // Nobody asked for this class, so failures are not worth reporting
+            }
+        }
+    }
+
+    private boolean shouldBackOff() {
+        synchronized (queue) {
+            for (DecompilerController<?> controller : controllers) {
+                if (controller.hasInteractiveWork()) {
+                    return true;
+                }
+            }
+        }
+
+        Runtime runtime = Runtime.getRuntime();
+        long used = runtime.totalMemory() - runtime.freeMemory();
+        if (used > runtime.maxMemory() * MAX_HEAP_USAGE) {
+            return true;
+        }
+
+        double load = os.getSystemLoadAverage();
+        return load >= 0 && load >= os.getAvailableProcessors();
+    }
+
+    private static class Candidate {
+        private final DecompilerController<?> controller;
+        private final OpenedFile file;
+        private final String path;
+
+        Candidate(DecompilerController<?> controller, OpenedFile file, String path) {
+            this.controller = controller;
+            this.file = file;
+            this.path = path;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Candidate)) return false;
+            Candidate candidate = (Candidate) o;
+            return controller == candidate.controller && file == candidate.file && path.equals(candidate.path);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(System.identityHashCode(controller), System.identityHashCode(file), path);
+        }
+    }
+}
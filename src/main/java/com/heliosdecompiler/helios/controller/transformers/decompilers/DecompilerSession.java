@@ -0,0 +1,93 @@
+/*
+ * Copyright 2017 Sam Sun <github-contact@samczsun.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.heliosdecompiler.helios.controller.transformers.decompilers;
+
+import com.heliosdecompiler.helios.controller.classpath.ClasspathMap;
+import com.heliosdecompiler.helios.controller.classpath.ClasspathSession;
+import com.heliosdecompiler.helios.controller.classpath.ClasspathSource;
+import com.heliosdecompiler.helios.controller.files.OpenedFile;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Per file state which a decompiler keeps between invocations. It stays valid until the file is modified or the path
+ * is reloaded
+ */
+public class DecompilerSession {
+    private static final AtomicInteger NEXT_ID = new AtomicInteger();
+
+    private final int id = NEXT_ID.getAndIncrement();
+    private final OpenedFile file;
+    private final int fileModifications;
+    private final int pathGeneration;
+    private final ClasspathSession classpathSession;
+    private final Map<String, String> results = new ConcurrentHashMap<>();
+    private final Map<String, String> methodResults = new ConcurrentHashMap<>();
+
+    DecompilerSession(OpenedFile file, int pathGeneration, List<ClasspathSource> sources) {
+        this.file = file;
+        this.fileModifications = file.getModificationCount();
+        this.pathGeneration = pathGeneration;
+        this.classpathSession = new ClasspathSession(sources);
+    }
+
+    public boolean isValid(int pathGeneration) {
+        return this.pathGeneration == pathGeneration && this.fileModifications == file.getModificationCount();
+    }
+
+    /**
+     * Identifies this session's classpath to out of process workers, which keep the classes they were sent for as long
+     * as the id stays the same
+     */
+    public int getId() {
+        return id;
+    }
+
+    public ClasspathMap newClasspath() {
+        return classpathSession.newClasspath();
+    }
+
+    /**
+     * @return the decompiled source of the class, if it was produced by an earlier invocation
+     */
+    public String getResult(String internalName) {
+        return results.get(internalName);
+    }
+
+    public void putResults(Map<String, String> results) {
+        this.results.putAll(results);
+    }
+
+    public boolean isEmpty() {
+        return results.isEmpty() && methodResults.isEmpty();
+    }
+
+    public String getMethodResult(String internalName, String methodName) {
+        return methodResults.get(internalName + "." + methodName);
+    }
+
+    public void putMethodResult(String internalName, String methodName, String result) {
+        methodResults.put(internalName + "." + methodName, result);
+    }
+
+    public OpenedFile getFile() {
+        return file;
+    }
+}
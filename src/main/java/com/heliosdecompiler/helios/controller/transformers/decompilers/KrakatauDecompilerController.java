@@ -20,18 +20,21 @@ import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import com.heliosdecompiler.helios.Settings;
 import com.heliosdecompiler.helios.controller.PathController;
-import com.heliosdecompiler.helios.controller.ProcessController;
+import com.heliosdecompiler.helios.controller.classpath.ClasspathSource;
+import com.heliosdecompiler.helios.controller.classpath.JdkRuntimeClasspathSource;
+import com.heliosdecompiler.helios.controller.classpath.OpenedFileClasspathSource;
 import com.heliosdecompiler.helios.controller.configuration.ConfigurationSerializer;
 import com.heliosdecompiler.helios.controller.configuration.Setting;
 import com.heliosdecompiler.helios.controller.files.OpenedFile;
-import com.heliosdecompiler.transformerapi.ClassData;
+import com.heliosdecompiler.helios.controller.transformers.krakatau.KrakatauWorkerPool;
 import com.heliosdecompiler.transformerapi.StandardTransformers;
 import com.heliosdecompiler.transformerapi.decompilers.krakatau.KrakatauDecompilerSettings;
 import org.apache.commons.configuration2.Configuration;
 
 import java.io.File;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.function.BiConsumer;
 
 @Singleton
@@ -44,7 +47,7 @@ public class KrakatauDecompilerController extends DecompilerController<KrakatauD
     private PathController pathController;
 
     @Inject
-    private ProcessController processController;
+    private KrakatauWorkerPool krakatauWorkerPool;
 
     public KrakatauDecompilerController() {
         super("Krakatau Decompiler", "krakatau", StandardTransformers.Decompilers.KRAKATAU);
@@ -79,23 +82,34 @@ public class KrakatauDecompilerController extends DecompilerController<KrakatauD
         String location = configuration.getString(Settings.PYTHON2_KEY);
         if (location != null)
             settings.setPythonExecutable(new File(location));
-        settings.setPath(pathController.getFiles());
-        settings.setProcessCreator(processController::launchProcess);
+        List<File> path = new ArrayList<>(pathController.getFiles());
+        if (configuration.getBoolean(Settings.INCLUDE_JDK_KEY, true)) {
+            JdkRuntimeClasspathSource jdk = pathController.getJdkSource();
+            if (jdk != null && jdk.getRuntimeJar() != null) {
+                path.add(jdk.getRuntimeJar());
+            }
+        }
+        settings.setPath(path);
+        settings.setProcessCreator(krakatauWorkerPool::launchProcess);
         return settings;
     }
 
     @Override
-    protected Map<String, ClassData> getClasspath(OpenedFile thisFile) {
-        Map<String, ClassData> map = new HashMap<>();
+    protected List<ClasspathSource> getClasspathSources(OpenedFile thisFile) {
+        // Krakatau reads the path itself
+        return Collections.singletonList(new OpenedFileClasspathSource(thisFile));
+    }
 
-        for (Map.Entry<String, byte[]> ent : thisFile.getContents().entrySet()) {
-            ClassData data = ClassData.construct(ent.getValue());
-            if (data != null && !map.containsKey(data.getInternalName())) {
-                map.put(data.getInternalName(), data);
-            }
-        }
+    @Override
+    protected int getClasspathDepth() {
+        // Krakatau only sees the classes written out for it and cannot look anything else up by name
+        return -1;
+    }
 
-        return map;
+    @Override
+    protected boolean supportsWorkers() {
+        // Krakatau already runs in its own process
+        return false;
     }
 
     private class RawBooleanSetting extends Setting<Boolean, KrakatauDecompilerSettings> {
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2017 Sam Sun <github-contact@samczsun.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.heliosdecompiler.helios.controller.transformers.decompilers.worker;
+
+import com.heliosdecompiler.helios.controller.transformers.decompilers.CFRDecompilerController;
+import com.heliosdecompiler.helios.controller.transformers.decompilers.DecompilerController;
+import com.heliosdecompiler.helios.controller.transformers.decompilers.FernflowerDecompilerController;
+import com.heliosdecompiler.helios.controller.transformers.decompilers.ProcyonDecompilerController;
+import com.heliosdecompiler.transformerapi.ClassData;
+import com.heliosdecompiler.transformerapi.TransformationResult;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Entry point of a child JVM which decompiles classes on behalf of {@link DecompilerWorkerPool}. Anything the engines
+ * print is captured and sent back with the result, so stdout is only ever used for protocol frames
+ */
+public class DecompilerWorker {
+    private final DataInputStream in;
+    private final DataOutputStream out;
+    private final Map<String, DecompilerController<?>> controllers = new HashMap<>();
+
+    private int handle = -1;
+    private final Map<String, ClassData> classes = new HashMap<>();
+    private final Set<String> missing = new HashSet<>();
+
+    private DecompilerWorker(DataInputStream in, DataOutputStream out) {
+        this.in = in;
+        this.out = out;
+        for (DecompilerController<?> controller : Arrays.asList(new CFRDecompilerController(), new ProcyonDecompilerController(), new FernflowerDecompilerController())) {
+            controllers.put(controller.getInternalName(), controller);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(System.in));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out)));
+        System.setOut(System.err);
+        new DecompilerWorker(in, out).run();
+    }
+
+    private void run() throws IOException {
+        while (true) {
+            int type;
+            try {
+                type = in.readInt();
+            } catch (EOFException ex) {
+                return;
+            }
+            WorkerProtocol.expect(WorkerProtocol.DECOMPILE, type);
+            handleDecompile();
+        }
+    }
+
+    private void handleDecompile() throws IOException {
+        String engine = WorkerProtocol.readString(in);
+        Map<String, String> settings = new HashMap<>();
+        int settingCount = in.readInt();
+        for (int i = 0; i < settingCount; i++) {
+            settings.put(WorkerProtocol.readString(in), WorkerProtocol.readString(in));
+        }
+        String methodName = WorkerProtocol.readString(in);
+
+        int handle = in.readInt();
+        if (handle != this.handle) {
+            this.handle = handle;
+            classes.clear();
+            missing.clear();
+        }
+        int classCount = in.readInt();
+        for (int i = 0; i < classCount; i++) {
+            String name = WorkerProtocol.readString(in);
+            ClassData classData = ClassData.construct(WorkerProtocol.readBytes(in));
+            if (classData != null) {
+                classes.put(name, classData);
+            }
+        }
+
+        List<ClassData> targets = new ArrayList<>();
+        int targetCount = in.readInt();
+        for (int i = 0; i < targetCount; i++) {
+            ClassData classData = ClassData.construct(WorkerProtocol.readBytes(in));
+            if (classData != null) {
+                targets.add(classData);
+            }
+        }
+
+        ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+        ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+        PrintStream originalErr = System.err;
+        Map<String, String> results = Collections.emptyMap();
+        String engineStdout = "";
+        String engineStderr = "";
+        boolean fatal = false;
+        try {
+            System.setOut(new PrintStream(stdout, true));
+            System.setErr(new PrintStream(stderr, true));
+
+            DecompilerController<?> controller = controllers.get(engine);
+            if (controller == null) {
+                throw new IllegalArgumentException("Unknown decompiler " + engine);
+            }
+            TransformationResult<String> result = decompile(controller, settings, methodName, targets);
+            results = result.getTransformationData();
+            engineStdout = String.valueOf(result.getStdout());
+            engineStderr = String.valueOf(result.getStderr());
+        } catch (Throwable t) {
+            t.printStackTrace(System.err);
+            // Whatever state the engine left behind cannot be trusted after running out of memory
+            fatal = t instanceof VirtualMachineError;
+        } finally {
+            System.setOut(originalErr);
+            System.setErr(originalErr);
+        }
+
+        out.writeInt(WorkerProtocol.RESULT);
+        out.writeInt(results.size());
+        for (Map.Entry<String, String> entry : results.entrySet()) {
+            WorkerProtocol.writeString(out, entry.getKey());
+            WorkerProtocol.writeString(out, entry.getValue());
+        }
+        WorkerProtocol.writeString(out, stdout.toString() + engineStdout);
+        WorkerProtocol.writeString(out, stderr.toString() + engineStderr);
+        out.flush();
+
+        if (fatal) {
+            System.exit(1);
+        }
+    }
+
+    private <S> TransformationResult<String> decompile(DecompilerController<S> controller, Map<String, String> settings, String methodName, Collection<ClassData> targets) throws Exception {
+        S settingsObject = controller.createSettings(settings);
+        if (methodName != null) {
+            settingsObject = controller.scopeToMethod(settingsObject, methodName).orElse(settingsObject);
+        }
+        return controller.getDecompiler().decompile(targets, settingsObject, new RemoteClasspath());
+    }
+
+    /**
+     * Classes which the parent did not send up front are requested over the pipe when the engine asks for them
+     */
+    private class RemoteClasspath extends AbstractMap<String, ClassData> {
+        @Override
+        public ClassData get(Object key) {
+            if (!(key instanceof String)) {
+                return null;
+            }
+            String name = (String) key;
+            ClassData classData = classes.get(name);
+            if (classData == null && !missing.contains(name)) {
+                try {
+                    out.writeInt(WorkerProtocol.LOOKUP);
+                    WorkerProtocol.writeString(out, name);
+                    out.flush();
+                    WorkerProtocol.expect(WorkerProtocol.CLASS, in.readInt());
+                    byte[] data = WorkerProtocol.readBytes(in);
+                    classData = data == null ? null : ClassData.construct(data);
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+                if (classData == null) {
+                    missing.add(name);
+                } else {
+                    classes.put(name, classData);
+                }
+            }
+            return classData;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public Set<Entry<String, ClassData>> entrySet() {
+            // Copied, as looking up a class while the engine iterates would otherwise modify the map under it
+            return new HashMap<>(classes).entrySet();
+        }
+    }
+}
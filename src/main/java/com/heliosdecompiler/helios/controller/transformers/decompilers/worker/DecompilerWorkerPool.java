@@ -0,0 +1,154 @@
+/*
+ * Copyright 2017 Sam Sun <github-contact@samczsun.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.heliosdecompiler.helios.controller.transformers.decompilers.worker;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.heliosdecompiler.helios.Settings;
+import com.heliosdecompiler.helios.controller.ProcessController;
+import com.heliosdecompiler.helios.controller.classpath.ClasspathMap;
+import org.apache.commons.configuration2.Configuration;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A pool of child JVMs which decompile classes out of process, so that a class which exhausts the heap or never
+ * finishes only takes down its worker. Workers are started one at a time as requests need them, up to the configured
+ * count, and a worker which dies, is abandoned mid-request or misses its deadline is killed and replaced by the next
+ * request
+ */
+@Singleton
+public class DecompilerWorkerPool {
+    private static final String DEFAULT_HEAP = "512m";
+    private static final long DEFAULT_TIMEOUT = 60000;
+
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "Decompiler Worker Deadline");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Inject
+    private Configuration configuration;
+
+    @Inject
+    private ProcessController processController;
+
+    private final List<DecompilerWorkerProcess> idle = new ArrayList<>();
+    private int size;
+    private int alive;
+
+    public boolean isEnabled() {
+        return configuration.getBoolean(Settings.WORKERS_ENABLED_KEY, false);
+    }
+
+    /**
+     * @param methodName if not null, only the methods with this name are decompiled
+     */
+    public WorkerResult decompile(String engine, Map<String, String> settings, String methodName, int handle, ClasspathMap classpath, Collection<byte[]> targets) throws IOException, InterruptedException {
+        DecompilerWorkerProcess worker = acquire();
+        long timeout = configuration.getLong(Settings.WORKERS_TIMEOUT_KEY, DEFAULT_TIMEOUT);
+        // Killing a hung worker makes the read below fail, which frees this thread and gets the worker replaced
+        ScheduledFuture<?> deadline = TIMER.schedule(worker::destroy, timeout, TimeUnit.MILLISECONDS);
+        boolean healthy = false;
+        try {
+            WorkerResult result = worker.decompile(engine, settings, methodName, handle, classpath, targets);
+            healthy = worker.isAlive();
+            return result;
+        } catch (IOException ex) {
+            if (deadline.isDone()) {
+                throw new IOException("The decompiler worker did not finish within " + timeout + "ms", ex);
+            }
+            throw new IOException("The decompiler worker crashed", ex);
+        } finally {
+            if (!deadline.cancel(false)) {
+                // The deadline fired, so the worker is being killed even if it answered in time
+                healthy = false;
+            }
+            // Reached without a result when the worker died or the request was cancelled, and in both cases the
+            // worker may still be busy with it
+            release(worker, healthy);
+        }
+    }
+
+    private DecompilerWorkerProcess acquire() throws IOException, InterruptedException {
+        while (true) {
+            synchronized (idle) {
+                if (size == 0) {
+                    size = Math.max(1, configuration.getInt(Settings.WORKERS_COUNT_KEY, Runtime.getRuntime().availableProcessors() - 1));
+                }
+                while (idle.isEmpty() && alive >= size) {
+                    idle.wait();
+                }
+                if (!idle.isEmpty()) {
+                    DecompilerWorkerProcess worker = idle.remove(idle.size() - 1);
+                    if (worker.isAlive()) {
+                        return worker;
+                    }
+                    // Killed from outside, for example through the process menu
+                    alive--;
+                    continue;
+                }
+                // Claim the slot now, but start the worker outside the lock
+                alive++;
+            }
+            try {
+                return launch();
+            } catch (IOException ex) {
+                synchronized (idle) {
+                    alive--;
+                    idle.notifyAll();
+                }
+                throw ex;
+            }
+        }
+    }
+
+    private void release(DecompilerWorkerProcess worker, boolean healthy) {
+        synchronized (idle) {
+            if (healthy) {
+                idle.add(worker);
+            } else {
+                // A replacement is started by the next acquire
+                worker.destroy();
+                alive--;
+            }
+            idle.notifyAll();
+        }
+    }
+
+    private DecompilerWorkerProcess launch() throws IOException {
+        String java = new File(new File(System.getProperty("java.home"), "bin"), "java").getAbsolutePath();
+        ProcessBuilder builder = new ProcessBuilder(
+                java,
+                "-Xmx" + configuration.getString(Settings.WORKERS_HEAP_KEY, DEFAULT_HEAP),
+                "-cp", System.getProperty("java.class.path"),
+                DecompilerWorker.class.getName()
+        );
+        builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+        return new DecompilerWorkerProcess(processController.launchProcess(builder, false));
+    }
+}
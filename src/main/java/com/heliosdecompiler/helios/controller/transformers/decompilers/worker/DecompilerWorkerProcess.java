@@ -0,0 +1,109 @@
+/*
+ * Copyright 2017 Sam Sun <github-contact@samczsun.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.heliosdecompiler.helios.controller.transformers.decompilers.worker;
+
+import com.heliosdecompiler.helios.controller.classpath.ClasspathMap;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * The parent's end of a single {@link DecompilerWorker}. It remembers which classpath entries the worker already
+ * holds for the current classpath handle so that they are only sent once
+ */
+class DecompilerWorkerProcess {
+    private final Process process;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+
+    private int handle = -1;
+    private final Set<String> sent = new HashSet<>();
+
+    DecompilerWorkerProcess(Process process) {
+        this.process = process;
+        this.in = new DataInputStream(new BufferedInputStream(process.getInputStream()));
+        this.out = new DataOutputStream(new BufferedOutputStream(process.getOutputStream()));
+    }
+
+    WorkerResult decompile(String engine, Map<String, String> settings, String methodName, int handle, ClasspathMap classpath, Collection<byte[]> targets) throws IOException {
+        if (handle != this.handle) {
+            this.handle = handle;
+            sent.clear();
+        }
+
+        out.writeInt(WorkerProtocol.DECOMPILE);
+        WorkerProtocol.writeString(out, engine);
+        out.writeInt(settings.size());
+        for (Map.Entry<String, String> entry : settings.entrySet()) {
+            WorkerProtocol.writeString(out, entry.getKey());
+            WorkerProtocol.writeString(out, entry.getValue());
+        }
+        WorkerProtocol.writeString(out, methodName);
+
+        out.writeInt(handle);
+        List<String> unsent = new ArrayList<>();
+        for (String name : classpath.keySet()) {
+            if (!sent.contains(name)) {
+                unsent.add(name);
+            }
+        }
+        out.writeInt(unsent.size());
+        for (String name : unsent) {
+            WorkerProtocol.writeString(out, name);
+            WorkerProtocol.writeBytes(out, classpath.getBytes(name));
+            sent.add(name);
+        }
+
+        out.writeInt(targets.size());
+        for (byte[] target : targets) {
+            WorkerProtocol.writeBytes(out, target);
+        }
+        out.flush();
+
+        while (true) {
+            int type = in.readInt();
+            if (type == WorkerProtocol.LOOKUP) {
+                String name = WorkerProtocol.readString(in);
+                byte[] data = classpath.getBytes(name);
+                out.writeInt(WorkerProtocol.CLASS);
+                WorkerProtocol.writeBytes(out, data);
+                out.flush();
+                if (data != null) {
+                    sent.add(name);
+                }
+            } else {
+                WorkerProtocol.expect(WorkerProtocol.RESULT, type);
+                Map<String, String> results = new HashMap<>();
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    results.put(WorkerProtocol.readString(in), WorkerProtocol.readString(in));
+                }
+                String stdout = WorkerProtocol.readString(in);
+                String stderr = WorkerProtocol.readString(in);
+                return new WorkerResult(results, stdout, stderr);
+            }
+        }
+    }
+
+    boolean isAlive() {
+        return process.isAlive();
+    }
+
+    void destroy() {
+        process.destroyForcibly();
+    }
+}
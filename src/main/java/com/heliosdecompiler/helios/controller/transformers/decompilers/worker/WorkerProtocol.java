@@ -0,0 +1,84 @@
+/*
+ * Copyright 2017 Sam Sun <github-contact@samczsun.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.heliosdecompiler.helios.controller.transformers.decompilers.worker;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Frames exchanged between {@link DecompilerWorkerPool} and {@link DecompilerWorker} over the worker's stdin and
+ * stdout. Every frame starts with its type, and byte arrays and strings are length prefixed, with a length of -1
+ * meaning null
+ */
+final class WorkerProtocol {
+    /**
+     * Parent to worker: engine, settings, method name, classpath handle, new classpath entries and the classes to
+     * decompile
+     */
+    static final int DECOMPILE = 1;
+    /**
+     * Worker to parent: the name of a class which the decompiler asked for but the worker does not have
+     */
+    static final int LOOKUP = 2;
+    /**
+     * Parent to worker: the answer to a {@link #LOOKUP}
+     */
+    static final int CLASS = 3;
+    /**
+     * Worker to parent: the decompiled sources along with whatever the engine printed
+     */
+    static final int RESULT = 4;
+
+    private WorkerProtocol() {
+    }
+
+    static void writeBytes(DataOutputStream out, byte[] data) throws IOException {
+        if (data == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(data.length);
+            out.write(data);
+        }
+    }
+
+    static byte[] readBytes(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] data = new byte[length];
+        in.readFully(data);
+        return data;
+    }
+
+    static void writeString(DataOutputStream out, String string) throws IOException {
+        writeBytes(out, string == null ? null : string.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static String readString(DataInputStream in) throws IOException {
+        byte[] data = readBytes(in);
+        return data == null ? null : new String(data, StandardCharsets.UTF_8);
+    }
+
+    static void expect(int expected, int actual) throws IOException {
+        if (expected != actual) {
+            throw new IOException("Expected frame " + expected + " but got " + actual);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2017 Sam Sun <github-contact@samczsun.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.heliosdecompiler.helios.controller.transformers.decompilers.worker;
+
+import java.util.Map;
+
+public class WorkerResult {
+    private final Map<String, String> results;
+    private final String stdout;
+    private final String stderr;
+
+    WorkerResult(Map<String, String> results, String stdout, String stderr) {
+        this.results = results;
+        this.stdout = stdout;
+        this.stderr = stderr;
+    }
+
+    public Map<String, String> getResults() {
+        return results;
+    }
+
+    public String getStdout() {
+        return stdout;
+    }
+
+    public String getStderr() {
+        return stderr;
+    }
+}
@@ -23,13 +23,23 @@ import com.heliosdecompiler.helios.controller.backgroundtask.BackgroundTaskHelpe
 import com.heliosdecompiler.helios.controller.files.OpenedFile;
 import com.heliosdecompiler.helios.controller.transformers.BaseTransformerController;
 import com.heliosdecompiler.helios.controller.transformers.TransformerType;
+import com.heliosdecompiler.helios.utils.Outcome;
+import com.heliosdecompiler.helios.utils.SingleFlight;
 import com.heliosdecompiler.transformerapi.ClassData;
 import com.heliosdecompiler.transformerapi.TransformationResult;
 import com.heliosdecompiler.transformerapi.disassemblers.Disassembler;
 
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.BiConsumer;
 
 public abstract class DisassemblerController<SettingObject> extends BaseTransformerController<SettingObject> {
@@ -37,6 +47,10 @@ public abstract class DisassemblerController<SettingObject> extends BaseTransfor
     @Inject
     private BackgroundTaskHelper backgroundTaskHelper;
 
+    private final SingleFlight<List<Object>, Outcome> flights = new SingleFlight<>();
+    // Callers which joined a running flight, one of which takes over if the task running it is cancelled
+    private final Map<CompletableFuture<Outcome>, Queue<CompletableFuture<Outcome>>> joiners = new ConcurrentHashMap<>();
+
     public DisassemblerController(String name, String id, Disassembler<SettingObject> disassembler) {
         super(TransformerType.DISASSEMBLER, id, name);
         this.disassembler = disassembler;
@@ -46,43 +60,97 @@ public abstract class DisassemblerController<SettingObject> extends BaseTransfor
         return disassembler;
     }
 
+    /**
+     * Requests for a class which is already being disassembled with the same settings share that result. Cancelling
+     * the task only aborts the request which started it, the work is handed to a request which joined it if there is one
+     */
     public void disassemble(OpenedFile file, String path, BiConsumer<Boolean, String> consumer) {
+        byte[] data = file.getContent(path);
+        SingleFlight<List<Object>, Outcome>.Flight flight = flights.claim(Arrays.asList(
+                file, path, file.getModificationCount(), getInternalName(), getSnapshot().getFingerprint()));
+        CompletableFuture<Outcome> shared = flight.getFuture();
+        CompletableFuture<Outcome> mine = new CompletableFuture<>();
+        shared.whenComplete((outcome, failure) -> {
+            joiners.remove(shared);
+            if (outcome != null) {
+                mine.complete(outcome);
+            } else {
+                mine.completeExceptionally(failure);
+            }
+        });
+        mine.whenComplete((outcome, failure) -> {
+            if (outcome != null) {
+                consumer.accept(outcome.isSuccess(), outcome.getText());
+            } else {
+                consumer.accept(false, "Disassembling aborted");
+            }
+        });
+
+        if (flight.isOwner()) {
+            run(flight, data, path, mine);
+        } else {
+            joiners.computeIfAbsent(shared, key -> new ConcurrentLinkedQueue<>()).add(mine);
+            if (shared.isDone()) {
+                joiners.remove(shared);
+            }
+        }
+    }
+
+    private void run(SingleFlight<List<Object>, Outcome>.Flight flight, byte[] data, String path, CompletableFuture<Outcome> owner) {
+        AtomicBoolean handedOff = new AtomicBoolean();
         backgroundTaskHelper.submit(new BackgroundTask(Message.TASK_DISASSEMBLE_FILE.format(path, getDisplayName()), true, () -> {
             try {
-                byte[] data = file.getContent(path);
-                ClassData cd = ClassData.construct(data);
-                if (cd != null) {
-                    TransformationResult<String> transformationResult = disassembler.disassemble(cd, createSettings());
-
-                    Map<String, String> results = transformationResult.getTransformationData();
-                    if (results.containsKey(cd.getInternalName())) {
-                        consumer.accept(true, results.get(cd.getInternalName()));
-                    } else {
-                        StringBuilder output = new StringBuilder();
-                        output.append("An error has occurred while disassembling this file.\r\n")
-                                .append("If you have not tried another disassembler, try that. Otherwise, you're out of luck.\r\n\r\n")
-                                .append("stdout:\r\n")
-                                .append(transformationResult.getStdout())
-                                .append("\r\nstderr:\r\n")
-                                .append(transformationResult.getStderr());
-                        consumer.accept(false, output.toString());
-                    }
-                } else {
-                    consumer.accept(false, "Could not disassemble - are you sure that's a class file?");
+                flight.complete(disassemble(data));
+            } finally {
+                if (!handedOff.get()) {
+                    flight.fail(new CancellationException());
                 }
-            } catch (Throwable e) {
-                StringWriter writer = new StringWriter();
-                e.printStackTrace(new PrintWriter(writer));
-
-                StringBuilder output = new StringBuilder();
-                output.append("An error has occurred while decompiling this file.\r\n")
-                        .append("If you have not tried another decompiler, try that. Otherwise, you're out of luck.\r\n\r\n")
-                        .append("Exception:\r\n")
-                        .append(writer.toString());
-                consumer.accept(false, output.toString());
             }
         }, () -> {
-            consumer.accept(false, "Disassembling aborted");
+            handedOff.set(true);
+            owner.cancel(false);
+            Queue<CompletableFuture<Outcome>> waiting = joiners.get(flight.getFuture());
+            CompletableFuture<Outcome> next = waiting == null ? null : waiting.poll();
+            if (next != null) {
+                run(flight, data, path, next);
+            } else {
+                flight.fail(new CancellationException());
+            }
         }));
     }
+
+    private Outcome disassemble(byte[] data) {
+        try {
+            ClassData cd = ClassData.construct(data);
+            if (cd != null) {
+                TransformationResult<String> transformationResult = disassembler.disassemble(cd, createSettings());
+
+                Map<String, String> results = transformationResult.getTransformationData();
+                if (results.containsKey(cd.getInternalName())) {
+                    return new Outcome(true, results.get(cd.getInternalName()));
+                } else {
+                    StringBuilder output = new StringBuilder();
+                    output.append("An error has occurred while disassembling this file.\r\n")
+                            .append("If you have not tried another disassembler, try that. Otherwise, you're out of luck.\r\n\r\n")
+                            .append("stdout:\r\n")
+                            .append(transformationResult.getStdout())
+                            .append("\r\nstderr:\r\n")
+                            .append(transformationResult.getStderr());
+                    return new Outcome(false, output.toString());
+                }
+            } else {
+                return new Outcome(false, "Could not disassemble - are you sure that's a class file?");
+            }
+        } catch (Throwable e) {
+            StringWriter writer = new StringWriter();
+            e.printStackTrace(new PrintWriter(writer));
+
+            StringBuilder output = new StringBuilder();
+            output.append("An error has occurred while decompiling this file.\r\n")
+                    .append("If you have not tried another decompiler, try that. Otherwise, you're out of luck.\r\n\r\n")
+                    .append("Exception:\r\n")
+                    .append(writer.toString());
+            return new Outcome(false, output.toString());
+        }
+    }
 }
@@ -19,9 +19,9 @@ package com.heliosdecompiler.helios.controller.transformers.disassemblers;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import com.heliosdecompiler.helios.Settings;
-import com.heliosdecompiler.helios.controller.ProcessController;
 import com.heliosdecompiler.helios.controller.configuration.ConfigurationSerializer;
 import com.heliosdecompiler.helios.controller.configuration.Setting;
+import com.heliosdecompiler.helios.controller.transformers.krakatau.KrakatauWorkerPool;
 import com.heliosdecompiler.transformerapi.StandardTransformers;
 import com.heliosdecompiler.transformerapi.disassemblers.krakatau.KrakatauDisassemblerSettings;
 import org.apache.commons.configuration2.Configuration;
@@ -36,7 +36,7 @@ public class KrakatauDisassemblerController extends DisassemblerController<Kraka
     private Configuration configuration;
 
     @Inject
-    private ProcessController processController;
+    private KrakatauWorkerPool krakatauWorkerPool;
 
     public KrakatauDisassemblerController() {
         super("Krakatau Disassembler", "krakatau-disassembler", StandardTransformers.Disassemblers.KRAKATAU);
@@ -56,7 +56,7 @@ public class KrakatauDisassemblerController extends DisassemblerController<Kraka
     protected KrakatauDisassemblerSettings createSettings() {
         KrakatauDisassemblerSettings settings = new KrakatauDisassemblerSettings();
         settings.setPythonExecutable(new File(configuration.getString(Settings.PYTHON2_KEY)));
-        settings.setProcessCreator(processController::launchProcess);
+        settings.setProcessCreator(krakatauWorkerPool::launchProcess);
         return settings;
     }
 
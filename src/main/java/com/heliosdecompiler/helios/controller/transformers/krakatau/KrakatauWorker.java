@@ -0,0 +1,129 @@
+/*
+ * Copyright 2017 Sam Sun <github-contact@samczsun.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.heliosdecompiler.helios.controller.transformers.krakatau;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * The Java end of one resident Krakatau interpreter running krakatau-worker.py
+ */
+class KrakatauWorker {
+    private final Process process;
+    private final List<String> interpreter;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+
+    KrakatauWorker(Process process, List<String> interpreter) {
+        this.process = process;
+        this.interpreter = interpreter;
+        this.in = new DataInputStream(new BufferedInputStream(process.getInputStream()));
+        this.out = new DataOutputStream(new BufferedOutputStream(process.getOutputStream()));
+    }
+
+    /**
+     * Runs a Krakatau script with the given arguments as if it had been launched in the given directory
+     */
+    Process run(File directory, List<String> script) throws IOException {
+        out.writeInt(script.size() + 1);
+        writeString(directory == null ? "" : directory.getAbsolutePath());
+        for (String arg : script) {
+            writeString(arg);
+        }
+        out.flush();
+
+        int exitCode = in.readInt();
+        byte[] stdout = readBytes();
+        byte[] stderr = readBytes();
+        return new CompletedProcess(exitCode, stdout, stderr);
+    }
+
+    List<String> getInterpreter() {
+        return interpreter;
+    }
+
+    boolean isAlive() {
+        return process.isAlive();
+    }
+
+    void destroy() {
+        process.destroyForcibly();
+    }
+
+    private void writeString(String string) throws IOException {
+        byte[] data = string.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(data.length);
+        out.write(data);
+    }
+
+    private byte[] readBytes() throws IOException {
+        byte[] data = new byte[in.readInt()];
+        in.readFully(data);
+        return data;
+    }
+
+    /**
+     * Stands in for the process Krakatau would otherwise have been launched in, so callers can keep reading its
+     * output and exit code the same way
+     */
+    private static class CompletedProcess extends Process {
+        private final int exitCode;
+        private final byte[] stdout;
+        private final byte[] stderr;
+
+        CompletedProcess(int exitCode, byte[] stdout, byte[] stderr) {
+            this.exitCode = exitCode;
+            this.stdout = stdout;
+            this.stderr = stderr;
+        }
+
+        @Override
+        public OutputStream getOutputStream() {
+            return new ByteArrayOutputStream();
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return new ByteArrayInputStream(stdout);
+        }
+
+        @Override
+        public InputStream getErrorStream() {
+            return new ByteArrayInputStream(stderr);
+        }
+
+        @Override
+        public int waitFor() {
+            return exitCode;
+        }
+
+        @Override
+        public int exitValue() {
+            return exitCode;
+        }
+
+        @Override
+        public void destroy() {
+        }
+
+        @Override
+        public boolean isAlive() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2017 Sam Sun <github-contact@samczsun.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.heliosdecompiler.helios.controller.transformers.krakatau;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.heliosdecompiler.helios.Constants;
+import com.heliosdecompiler.helios.Settings;
+import com.heliosdecompiler.helios.controller.ProcessController;
+import org.apache.commons.configuration2.Configuration;
+import org.apache.commons.io.IOUtils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Keeps Python interpreters with Krakatau loaded running between requests. Krakatau is handed
+ * {@link #launchProcess(ProcessBuilder)} in place of {@link ProcessController#launchProcess(ProcessBuilder)}, and
+ * each command it would have launched is run in one of the resident interpreters instead
+ */
+@Singleton
+public class KrakatauWorkerPool {
+    private static final File WORKER_SCRIPT = new File(Constants.DATA_DIR, "krakatau-worker.py");
+
+    @Inject
+    private Configuration configuration;
+
+    @Inject
+    private ProcessController processController;
+
+    private final List<KrakatauWorker> idle = new ArrayList<>();
+    private int busy;
+    private boolean scriptExtracted;
+
+    public Process launchProcess(ProcessBuilder builder) throws IOException {
+        if (!configuration.getBoolean(Settings.KRAKATAU_WORKERS_ENABLED_KEY, true)) {
+            return processController.launchProcess(builder);
+        }
+
+        // Everything up to the script is the interpreter and its options, which the worker has to be started with
+        List<String> command = builder.command();
+        int script = 1;
+        while (script < command.size() && command.get(script).startsWith("-")) {
+            script++;
+        }
+        if (script >= command.size()) {
+            return processController.launchProcess(builder);
+        }
+        List<String> interpreter = new ArrayList<>(command.subList(0, script));
+
+        KrakatauWorker worker = acquire(interpreter);
+        boolean healthy = false;
+        try {
+            Process result = worker.run(builder.directory(), command.subList(script, command.size()));
+            healthy = worker.isAlive();
+            return result;
+        } finally {
+            release(worker, healthy);
+        }
+    }
+
+    private KrakatauWorker acquire(List<String> interpreter) throws IOException {
+        synchronized (idle) {
+            int size = Math.max(1, configuration.getInt(Settings.KRAKATAU_WORKERS_COUNT_KEY, 2));
+            while (idle.isEmpty() && busy >= size) {
+                try {
+                    idle.wait();
+                } catch (InterruptedException ex) {
+                    throw new IOException("Interrupted while waiting for a Krakatau worker", ex);
+                }
+            }
+            busy++;
+            for (int i = idle.size() - 1; i >= 0; i--) {
+                KrakatauWorker worker = idle.get(i);
+                if (worker.isAlive() && worker.getInterpreter().equals(interpreter)) {
+                    return idle.remove(i);
+                }
+            }
+            // None of the idle workers were started with this interpreter, so make room for one that is
+            if (!idle.isEmpty() && busy + idle.size() > size) {
+                idle.remove(0).destroy();
+            }
+        }
+        try {
+            return launch(interpreter);
+        } catch (IOException | RuntimeException ex) {
+            release(null, false);
+            throw ex;
+        }
+    }
+
+    private void release(KrakatauWorker worker, boolean healthy) {
+        synchronized (idle) {
+            busy--;
+            if (healthy) {
+                idle.add(worker);
+            } else if (worker != null) {
+                worker.destroy();
+            }
+            idle.notifyAll();
+        }
+    }
+
+    private KrakatauWorker launch(List<String> interpreter) throws IOException {
+        extractScript();
+        List<String> command = new ArrayList<>(interpreter);
+        command.add(WORKER_SCRIPT.getAbsolutePath());
+        ProcessBuilder builder = new ProcessBuilder(command);
+        builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+        return new KrakatauWorker(processController.launchProcess(builder, false), interpreter);
+    }
+
+    private synchronized void extractScript() throws IOException {
+        if (scriptExtracted) {
+            return;
+        }
+        try (InputStream in = getClass().getResourceAsStream("/krakatau-worker.py")) {
+            byte[] script = IOUtils.toByteArray(in);
+            if (!WORKER_SCRIPT.exists() || !Arrays.equals(script, Files.readAllBytes(WORKER_SCRIPT.toPath()))) {
+                WORKER_SCRIPT.getParentFile().mkdirs();
+                try (OutputStream out = new FileOutputStream(WORKER_SCRIPT)) {
+                    out.write(script);
+                }
+            }
+        }
+        scriptExtracted = true;
+    }
+}
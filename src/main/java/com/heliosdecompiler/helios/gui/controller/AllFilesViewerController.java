@@ -20,9 +20,11 @@ import com.cathive.fx.guice.GuiceFXMLLoader;
 import com.google.inject.Inject;
 import com.google.inject.name.Named;
 import com.heliosdecompiler.helios.controller.files.OpenedFile;
+import com.heliosdecompiler.helios.controller.transformers.decompilers.DecompilerPrefetcher;
 import com.heliosdecompiler.helios.gui.controller.editors.EditorController;
 import com.heliosdecompiler.helios.gui.model.FileTabProperties;
 import com.heliosdecompiler.helios.gui.model.TreeNode;
+import com.heliosdecompiler.helios.gui.view.editors.DecompilerView;
 import com.heliosdecompiler.helios.gui.view.editors.EditorView;
 import com.heliosdecompiler.helios.gui.view.editors.StandardEditors;
 import com.sun.javafx.scene.control.behavior.TabPaneBehavior;
@@ -52,6 +54,9 @@ public class AllFilesViewerController extends NestedController<MainViewControlle
     @Inject
     private EditorController editorController;
 
+    @Inject
+    private DecompilerPrefetcher decompilerPrefetcher;
+
     private Map<String, Tab> fileTabs = new HashMap<>();
 
     private boolean isMenuOpen = false;
@@ -63,7 +68,7 @@ public class AllFilesViewerController extends NestedController<MainViewControlle
     @FXML
     public void initialize() {
         stage.addEventFilter(KeyEvent.KEY_PRESSED, event -> {
-            if (event.isShortcutDown() && event.getCode() == KeyCode.T) {
+            if (event.isShortcutDown() && !event.isShiftDown() && event.getCode() == KeyCode.T) {
                 if (!isMenuOpen) {
                     isMenuOpen = true;
                     openOpenNewTabMenu();
@@ -190,6 +195,10 @@ public class AllFilesViewerController extends NestedController<MainViewControlle
         filePane.getTabs().add(editorTab);
         filePane.getSelectionModel().select(editorTab);
         properties.getOpenedEditors().put(editor.getDisplayName(), editorTab);
+
+        if (editor instanceof DecompilerView) {
+            decompilerPrefetcher.onOpened(((DecompilerView) editor).getController(), properties.getFile(), properties.getPath());
+        }
     }
 
     private String generateKey(TreeNode node) {
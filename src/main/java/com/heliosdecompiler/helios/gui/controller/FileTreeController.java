@@ -20,37 +20,54 @@ import com.google.inject.Inject;
 import com.heliosdecompiler.helios.controller.RecentFileController;
 import com.heliosdecompiler.helios.controller.backgroundtask.BackgroundTask;
 import com.heliosdecompiler.helios.controller.backgroundtask.BackgroundTaskHelper;
+import com.heliosdecompiler.helios.controller.files.ArchiveExporter;
 import com.heliosdecompiler.helios.controller.files.OpenedFile;
 import com.heliosdecompiler.helios.controller.files.OpenedFileController;
+import com.heliosdecompiler.helios.gui.controller.tree.LazyTreeItem;
 import com.heliosdecompiler.helios.gui.controller.tree.TreeCellFactory;
+import com.heliosdecompiler.helios.gui.controller.tree.TreeIconRegistry;
 import com.heliosdecompiler.helios.Message;
+import com.heliosdecompiler.helios.gui.model.TreeDiff;
 import com.heliosdecompiler.helios.gui.model.TreeNode;
+import com.heliosdecompiler.helios.gui.model.TreeSearchIndex;
 import com.heliosdecompiler.helios.ui.MessageHandler;
 import com.heliosdecompiler.helios.ui.views.file.FileFilter;
-import com.heliosdecompiler.helios.utils.Utils;
+import javafx.animation.AnimationTimer;
 import javafx.application.Platform;
 import javafx.collections.MapChangeListener;
 import javafx.fxml.FXML;
 import javafx.geometry.Bounds;
 import javafx.scene.control.*;
-import javafx.scene.image.Image;
-import javafx.scene.image.ImageView;
 import javafx.scene.input.*;
 import org.apache.commons.lang3.StringUtils;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
 
 public class FileTreeController extends NestedController<MainViewController> {
 
+    private static final long PULSE_BUDGET_NANOS = TimeUnit.MILLISECONDS.toNanos(8);
+    private static final int ATTACH_CHUNK = 256;
+    private static final int MAX_SEARCH_RESULTS = 200;
+
+    private static final Comparator<TreeNode> NODE_ORDER = (a, b) -> {
+        int ac = a.getChildren().size();
+        int bc = b.getChildren().size();
+
+        if (ac == 0 && bc != 0)
+            return 1;
+        else if (ac != 0 && bc == 0)
+            return -1;
+        return a.getDisplayName().compareTo(b.getDisplayName());
+    };
+
     @FXML
     private TreeView<TreeNode> root;
 
@@ -67,13 +84,20 @@ public class FileTreeController extends NestedController<MainViewController> {
 
     @Inject
     private RecentFileController recentFileController;
-    private Map<TreeNode, TreeItem<TreeNode>> itemMap = new HashMap<>();
+
+    @Inject
+    private TreeIconRegistry treeIconRegistry;
+
+    @Inject
+    private ArchiveExporter archiveExporter;
+    private Map<String, TreeItem<TreeNode>> itemMap = new ConcurrentHashMap<>();
+    private final TreeSearchIndex treeSearchIndex = new TreeSearchIndex();
 
     @FXML
     public void initialize() {
         this.rootItem = new TreeItem<>(new TreeNode("[root]"));
         this.root.setRoot(this.rootItem);
-        this.root.setCellFactory(new TreeCellFactory<>(node -> {
+        this.root.setCellFactory(new TreeCellFactory<>(treeIconRegistry, node -> {
             if (node.getParent() == null) {
                 ContextMenu export = new ContextMenu();
 
@@ -85,27 +109,16 @@ public class FileTreeController extends NestedController<MainViewController> {
                             .withTitle(Message.GENERIC_CHOOSE_EXPORT_LOCATION_JAR.format())
                             .withExtensionFilter(new FileFilter(Message.FILETYPE_JAVA_ARCHIVE.format(), "*.jar"), true)
                             .promptSave();
+                    if (file == null) {
+                        return;
+                    }
 
                     OpenedFile openedFile = (OpenedFile) node.getMetadata().get(OpenedFile.OPENED_FILE);
-
-                    Map<String, byte[]> clone = new HashMap<>(openedFile.getContents());
+                    ArchiveExporter.Snapshot snapshot = archiveExporter.snapshot(openedFile);
 
                     backgroundTaskHelper.submit(new BackgroundTask(Message.TASK_SAVING_FILE.format(node.getDisplayName()), true, () -> {
                         try {
-                            if (!file.exists()) {
-                                if (!file.createNewFile()) {
-                                    throw new IOException("Could not create export file");
-                                }
-                            }
-
-                            try (ZipOutputStream zipOutputStream = new ZipOutputStream(new FileOutputStream(file))) {
-                                for (Map.Entry<String, byte[]> ent : clone.entrySet()) {
-                                    ZipEntry zipEntry = new ZipEntry(ent.getKey());
-                                    zipOutputStream.putNextEntry(zipEntry);
-                                    zipOutputStream.write(ent.getValue());
-                                    zipOutputStream.closeEntry();
-                                }
-                            }
+                            archiveExporter.export(snapshot, file);
 
                             messageHandler.handleMessage(Message.GENERIC_EXPORTED.format());
                         } catch (IOException ex) {
@@ -137,7 +150,7 @@ public class FileTreeController extends NestedController<MainViewController> {
         Tooltip tooltip = new Tooltip();
         StringBuilder search = new StringBuilder();
 
-        List<TreeItem<TreeNode>> searchContext = new ArrayList<>();
+        List<TreeNode> searchContext = new ArrayList<>();
         AtomicInteger searchIndex = new AtomicInteger();
 
         root.focusedProperty().addListener((observable, oldValue, newValue) -> {
@@ -154,6 +167,9 @@ public class FileTreeController extends NestedController<MainViewController> {
         });
 
         root.addEventHandler(KeyEvent.KEY_PRESSED, event -> {
+            if (searchContext.isEmpty()) {
+                return;
+            }
             if (tooltip.isShowing() && event.getCode() == KeyCode.UP) {
                 if (searchIndex.decrementAndGet() < 0) {
                     searchIndex.set(searchContext.size() - 1);
@@ -167,8 +183,7 @@ public class FileTreeController extends NestedController<MainViewController> {
             }
             event.consume();
 
-            root.scrollTo(root.getRow(searchContext.get(searchIndex.get())));
-            root.getSelectionModel().select(searchContext.get(searchIndex.get()));
+            reveal(searchContext.get(searchIndex.get()));
         });
 
         root.addEventHandler(KeyEvent.KEY_TYPED, event -> {
@@ -194,23 +209,11 @@ public class FileTreeController extends NestedController<MainViewController> {
             tooltip.setText("Search for: " + str);
 
             searchContext.clear();
-
-            ArrayDeque<TreeItem<TreeNode>> deque = new ArrayDeque<>();
-            deque.addAll(rootItem.getChildren());
-
-            while (!deque.isEmpty()) {
-                TreeItem<TreeNode> item = deque.poll();
-                if (item.getValue().getDisplayName().contains(str)) {
-                    searchContext.add(item);
-                }
-                if (item.isExpanded() && item.getChildren().size() > 0)
-                    deque.addAll(item.getChildren());
-            }
+            searchContext.addAll(treeSearchIndex.search(str, MAX_SEARCH_RESULTS));
 
             searchIndex.set(0);
             if (searchContext.size() > 0) {
-                root.scrollTo(root.getRow(searchContext.get(0)));
-                root.getSelectionModel().select(searchContext.get(0));
+                reveal(searchContext.get(0));
             }
         });
 
@@ -219,7 +222,11 @@ public class FileTreeController extends NestedController<MainViewController> {
                 updateTree(change.getValueAdded());
             }
             if (change.getValueRemoved() != null) {
-                this.rootItem.getChildren().removeIf(ti -> ti.getValue().equals(change.getValueRemoved().getRoot()));
+                TreeNode removed = change.getValueRemoved().getRoot();
+                treeSearchIndex.remove(removed);
+                String prefix = removed.getPath() + "/";
+                itemMap.keySet().removeIf(path -> path.equals(removed.getPath()) || path.startsWith(prefix));
+                this.rootItem.getChildren().removeIf(ti -> ti.getValue().equals(removed));
             }
         });
     }
@@ -260,176 +267,222 @@ public class FileTreeController extends NestedController<MainViewController> {
         event.consume();
     }
 
-    public InputStream getIconForTreeItem(TreeNode node) {
-        if (node.testFlag(OpenedFile.IS_ROOT_FILE)) {
-            if (node.getDisplayName().endsWith(".jar")) {
-                return getClass().getResourceAsStream("/res/jar.png");
-            } else {
-                return getClass().getResourceAsStream("/res/file.png");
+    /**
+     * Expands every parent of the node, creating their items if needed, and selects it
+     */
+    public void reveal(TreeNode node) {
+        Deque<TreeNode> chain = new ArrayDeque<>();
+        for (TreeNode current = node; current != null; current = current.getParent()) {
+            chain.push(current);
+        }
+
+        TreeItem<TreeNode> item = null;
+        for (TreeNode current : chain) {
+            if (item != null) {
+                item.getChildren();
+                item.setExpanded(true);
             }
-        } else {
-            if (node.getChildren().size() > 0) {
-                return getClass().getResourceAsStream("/res/package.png");
-            } else if (node.getDisplayName().endsWith(".class")) {
-                return getClass().getResourceAsStream("/res/class.png");
-            } else {
-                return getClass().getResourceAsStream("/res/file.png");
+            item = itemMap.get(current.getPath());
+            if (item == null) {
+                return;
             }
         }
+
+        root.getSelectionModel().select(item);
+        root.scrollTo(root.getRow(item));
     }
 
     public void reload() {
         this.openedFileController.reload(this);
     }
 
+    /**
+     * Safe to call from any thread, the items are only read on the FX thread
+     */
     public Collection<TreeNode> getRoots() {
-        return new TreeItemNode(this.rootItem).getChildren();
+        FutureTask<List<TreeNode>> snapshot = new FutureTask<>(() -> {
+            List<TreeNode> roots = new ArrayList<>();
+            for (TreeItem<TreeNode> item : this.rootItem.getChildren()) {
+                roots.add(item.getValue());
+            }
+            return roots;
+        });
+        if (Platform.isFxApplicationThread()) {
+            snapshot.run();
+        } else {
+            Platform.runLater(snapshot);
+        }
+        try {
+            return snapshot.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return Collections.emptyList();
+        } catch (ExecutionException ex) {
+            throw new RuntimeException(ex.getCause());
+        }
     }
 
+    /**
+     * New items are created off the FX thread, sorted, and attached a few at a time, spending at most
+     * {@link #PULSE_BUDGET_NANOS} per frame. Blocks until every change has been applied
+     */
     public void updateTree(List<TreeNode> add, List<TreeNode> remove) {
-        Set<TreeItem<TreeNode>> updated = new HashSet<>();
-
-        ArrayDeque<TreeNode> queue = new ArrayDeque<>();
-        queue.addAll(add);
+        ArrayDeque<Runnable> operations = new ArrayDeque<>();
 
+        // removed first, since a removed node and an added one may share a path when packages are compacted
+        Set<TreeNode> removed = new HashSet<>(remove);
+        ArrayDeque<TreeNode> queue = new ArrayDeque<>(remove);
         while (!queue.isEmpty()) {
             TreeNode thisNode = queue.pop();
-
-            TreeItem<TreeNode> parent;
-
-            if (thisNode.getParent() == null) {
-                parent = rootItem;
-            } else {
-                parent = itemMap.get(thisNode.getParent());
+            TreeItem<TreeNode> thisItem = itemMap.remove(thisNode.getPath());
+            if (thisItem != null && removed.contains(thisNode)) {
+                operations.add(() -> {
+                    if (thisItem.getParent() != null) {
+                        thisItem.getParent().getChildren().remove(thisItem);
+                    }
+                });
             }
+            queue.addAll(thisNode.getChildren());
+        }
 
-            updated.add(parent);
-
-            TreeItem<TreeNode> thisItem = new TreeItem<>(thisNode);
-            thisItem.addEventHandler(TreeItem.<TreeNode>branchExpandedEvent(), event -> {
-                if (thisItem.getChildren().size() == 1) {
-                    thisItem.getChildren().get(0).setExpanded(true);
-                }
-            });
-            thisItem.setGraphic(new ImageView(new Image(getIconForTreeItem(thisNode))));
-            FutureTask<Void> call = new FutureTask<>(() -> {
-                parent.getChildren().add(thisItem);
-                return null;
-            });
-            Platform.runLater(call);
-            try {
-                call.get();
-            } catch (InterruptedException | ExecutionException e) {
-                e.printStackTrace();
+        Set<TreeNode> added = new HashSet<>(add);
+        Map<TreeItem<TreeNode>, List<TreeItem<TreeNode>>> attachments = new LinkedHashMap<>();
+        for (TreeNode thisNode : add) {
+            if (thisNode.getParent() != null && added.contains(thisNode.getParent())) {
+                continue;
+            }
+            TreeItem<TreeNode> parent = thisNode.getParent() == null ? rootItem : itemMap.get(thisNode.getParent().getPath());
+            if (parent != null) {
+                attachments.computeIfAbsent(parent, k -> new ArrayList<>()).add(createItem(thisNode));
             }
-
-            itemMap.put(thisNode, thisItem);
-
-            queue.addAll(thisNode.getChildren());
         }
 
-        for (TreeItem<TreeNode> parent : updated) {
-            if (parent.getChildren().size() > 1) {
-                FutureTask<Void> call = new FutureTask<>(() -> {
-                    parent.getChildren().sort((a, b) -> {
-                        int ac = a.getValue().getChildren().size();
-                        int bc = b.getValue().getChildren().size();
-
-                        if (ac == 0 && bc != 0)
-                            return 1;
-                        else if (ac != 0 && bc == 0)
-                            return -1;
-                        return a.getValue().getDisplayName().compareTo(b.getValue().getDisplayName());
-                    });
-                    return null;
+        for (Map.Entry<TreeItem<TreeNode>, List<TreeItem<TreeNode>>> entry : attachments.entrySet()) {
+            TreeItem<TreeNode> parent = entry.getKey();
+            List<TreeItem<TreeNode>> children = entry.getValue();
+            children.sort((a, b) -> NODE_ORDER.compare(a.getValue(), b.getValue()));
+            for (int i = 0; i < children.size(); i += ATTACH_CHUNK) {
+                List<TreeItem<TreeNode>> chunk = children.subList(i, Math.min(children.size(), i + ATTACH_CHUNK));
+                operations.add(() -> {
+                    // Items which were never expanded pick up new children from their node once they are
+                    if (isLoaded(parent)) {
+                        parent.getChildren().addAll(chunk);
+                        chunk.forEach(this::register);
+                    }
                 });
-                Platform.runLater(call);
-                try {
-                    call.get();
-                } catch (InterruptedException | ExecutionException e) {
-                    e.printStackTrace();
-                }
             }
+            operations.add(() -> {
+                if (isLoaded(parent) && parent.getChildren().size() > children.size()) {
+                    parent.getChildren().sort((a, b) -> NODE_ORDER.compare(a.getValue(), b.getValue()));
+                }
+            });
         }
 
-        queue.addAll(remove);
-
-        while (!queue.isEmpty()) {
-            TreeNode thisNode = queue.pop();
-            TreeItem<TreeNode> thisItem = itemMap.remove(thisNode);
-            thisItem.getParent().getChildren().remove(thisItem);
-            queue.addAll(thisNode.getChildren());
-        }
+        applyInPulses(operations);
     }
 
-    public void updateTree() {
-        this.openedFileController.getLoadedFiles().forEach(this::updateTree);
+    /**
+     * Items are only looked up by path once they are attached, see {@link #register}
+     */
+    private TreeItem<TreeNode> createItem(TreeNode thisNode) {
+        LazyTreeItem thisItem = new LazyTreeItem(thisNode, NODE_ORDER, this::createAttachedItem, discarded -> itemMap.remove(discarded.getValue().getPath(), discarded));
+        thisItem.addEventHandler(TreeItem.<TreeNode>branchExpandedEvent(), event -> {
+            if (thisItem.getChildren().size() == 1) {
+                thisItem.getChildren().get(0).setExpanded(true);
+            }
+        });
+        return thisItem;
     }
 
-    private void updateTree(OpenedFile file) {
-        TreeNode root = file.getRoot();
-        Collection<TreeNode> displayedFiles = getRoots();
+    /**
+     * The factory of lazy items, whose children are attached as soon as they are created
+     */
+    private TreeItem<TreeNode> createAttachedItem(TreeNode thisNode) {
+        TreeItem<TreeNode> thisItem = createItem(thisNode);
+        register(thisItem);
+        return thisItem;
+    }
 
-        List<TreeNode> remove = new ArrayList<>();
-        List<TreeNode> add = new ArrayList<>();
+    private void register(TreeItem<TreeNode> item) {
+        itemMap.put(item.getValue().getPath(), item);
+    }
 
-        handleChanges(new State(root, displayedFiles), add);
+    private boolean isLoaded(TreeItem<TreeNode> item) {
+        return !(item instanceof LazyTreeItem) || ((LazyTreeItem) item).isLoaded();
+    }
 
-        TreeNode want = Utils.find(root, displayedFiles);
-        if (want != null) {
-            handleChanges(new State(want, Collections.singletonList(root)), remove);
+    private void applyInPulses(Deque<Runnable> operations) {
+        if (operations.isEmpty()) {
+            return;
+        }
+        if (Platform.isFxApplicationThread()) {
+            while (!operations.isEmpty()) {
+                operations.poll().run();
+            }
+            return;
         }
 
-        updateTree(add, remove);
-    }
+        CountDownLatch done = new CountDownLatch(1);
+        AnimationTimer timer = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                long deadline = System.nanoTime() + PULSE_BUDGET_NANOS;
+                do {
+                    try {
+                        operations.poll().run();
+                    } catch (RuntimeException ex) {
+                        ex.printStackTrace();
+                    }
+                } while (!operations.isEmpty() && System.nanoTime() < deadline);
 
-    private void handleChanges(State startingState, List<TreeNode> changes) {
-        ArrayDeque<State> check = new ArrayDeque<>();
-        check.add(startingState);
-        while (!check.isEmpty()) {
-            State next = check.pop();
-            TreeNode match = Utils.find(next.needle, next.haystack);
-            if (match != null) {
-                for (TreeNode current : next.needle.getChildren()) {
-                    check.add(new State(current, match.getChildren()));
+                if (operations.isEmpty()) {
+                    stop();
+                    done.countDown();
                 }
-            } else {
-                changes.add(next.needle);
             }
+        };
+        Platform.runLater(() -> timer.start());
+        try {
+            done.await();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
         }
     }
 
-    private class TreeItemNode extends TreeNode {
-        private TreeItem<TreeNode> thisItem;
-        private volatile Collection<TreeNode> cached;
+    public void updateTree() {
+        this.openedFileController.getLoadedFiles().forEach(this::updateTree);
+    }
 
-        public TreeItemNode(TreeItem<TreeNode> item) {
-            super(item.getParent() == null || item.getParent() == rootItem ? null : item.getParent().getValue(), item.getValue().getDisplayName());
-            thisItem = item;
-        }
+    private void updateTree(OpenedFile file) {
+        TreeNode root = file.getRoot();
 
-        public Collection<TreeNode> getChildren() {
-            if (cached == null) {
-                synchronized (this) {
-                    if (cached == null) {
-                        cached = new ArrayList<>();
-                        for (TreeItem<TreeNode> item : thisItem.getChildren()) {
-                            cached.add(new TreeItemNode(item));
-                        }
-                    }
-                }
+        TreeNode displayed = null;
+        for (TreeNode candidate : getRoots()) {
+            if (candidate.getPath().equals(root.getPath())) {
+                displayed = candidate;
+                break;
             }
-            return cached;
         }
-    }
 
-    class State {
-        TreeNode needle;
-        Collection<TreeNode> haystack;
+        treeSearchIndex.update(root);
+
+        TreeDiff diff = TreeDiff.compute(displayed, root);
+        applyInPulses(refreshValues(diff.getUpdated()));
+        updateTree(diff.getAdded(), diff.getRemoved());
+    }
 
-        public State(TreeNode needle, Collection<TreeNode> haystack) {
-            this.needle = needle;
-            this.haystack = haystack;
+    /**
+     * Points the items which already exist at the nodes of the reloaded file, so that items which were not expanded yet
+     * create their children from the new nodes
+     */
+    private Deque<Runnable> refreshValues(Collection<TreeNode> updated) {
+        ArrayDeque<Runnable> operations = new ArrayDeque<>();
+        for (TreeNode thisNode : updated) {
+            TreeItem<TreeNode> thisItem = itemMap.get(thisNode.getPath());
+            if (thisItem != null && thisItem.getValue() != thisNode) {
+                operations.add(() -> thisItem.setValue(thisNode));
+            }
         }
+        return operations;
     }
 }
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2017 Sam Sun <github-contact@samczsun.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.heliosdecompiler.helios.gui.controller;
+
+import com.google.inject.Inject;
+import com.heliosdecompiler.helios.Settings;
+import com.heliosdecompiler.helios.controller.files.ClassNameIndex;
+import javafx.application.Platform;
+import javafx.fxml.FXML;
+import javafx.scene.Scene;
+import javafx.scene.control.CheckBox;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.control.TextField;
+import javafx.scene.image.Image;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyEvent;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.layout.VBox;
+import javafx.stage.Stage;
+import org.apache.commons.configuration2.Configuration;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+public class GoToClassController {
+    private static final int MAX_RESULTS = 100;
+
+    @FXML
+    private VBox root;
+
+    @FXML
+    private TextField query;
+
+    @FXML
+    private CheckBox includePath;
+
+    @FXML
+    private ListView<ClassNameIndex.Entry> results;
+
+    @Inject
+    private ClassNameIndex classNameIndex;
+
+    @Inject
+    private Configuration configuration;
+
+    private final ExecutorService searcher = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "Class Search");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicInteger generation = new AtomicInteger();
+
+    private Stage stage;
+    private Consumer<ClassNameIndex.Entry> onChosen;
+
+    @FXML
+    private void initialize() {
+        stage = new Stage();
+        stage.setOnCloseRequest(event -> {
+            event.consume();
+            close();
+        });
+        stage.setScene(new Scene(root));
+        stage.getIcons().add(new Image(getClass().getResourceAsStream("/res/icon.png")));
+        stage.setTitle("Go to Class");
+
+        includePath.setSelected(configuration.getBoolean(Settings.GOTO_CLASS_INCLUDE_PATH_KEY, false));
+        includePath.selectedProperty().addListener((observable, oldValue, newValue) -> {
+            configuration.setProperty(Settings.GOTO_CLASS_INCLUDE_PATH_KEY, newValue);
+            search();
+        });
+
+        query.textProperty().addListener((observable, oldValue, newValue) -> search());
+        query.addEventFilter(KeyEvent.KEY_PRESSED, event -> {
+            int selected = results.getSelectionModel().getSelectedIndex();
+            if (event.getCode() == KeyCode.DOWN) {
+                results.getSelectionModel().select(Math.min(results.getItems().size() - 1, selected + 1));
+            } else if (event.getCode() == KeyCode.UP) {
+                results.getSelectionModel().select(Math.max(0, selected - 1));
+            } else if (event.getCode() == KeyCode.ENTER) {
+                choose();
+            } else if (event.getCode() == KeyCode.ESCAPE) {
+                close();
+            } else {
+                return;
+            }
+            results.scrollTo(results.getSelectionModel().getSelectedIndex());
+            event.consume();
+        });
+
+        results.setCellFactory(view -> new ListCell<ClassNameIndex.Entry>() {
+            @Override
+            protected void updateItem(ClassNameIndex.Entry item, boolean empty) {
+                super.updateItem(item, empty);
+                if (item == null || empty) {
+                    setText(null);
+                } else {
+                    setText(item.getSimpleName() + " - " + item.getInternalName() + " (" + item.getFile().getTarget().getFileName() + ")");
+                }
+            }
+        });
+    }
+
+    /**
+     * Shows the dialog. The chosen class is passed to onChosen on the FX thread
+     */
+    public void open(Consumer<ClassNameIndex.Entry> onChosen) {
+        this.onChosen = onChosen;
+        boolean withPath = includePath.isSelected();
+        searcher.submit(() -> classNameIndex.prepare(withPath));
+
+        stage.show();
+        stage.requestFocus();
+        query.requestFocus();
+        query.selectAll();
+        search();
+    }
+
+    private void close() {
+        generation.incrementAndGet();
+        stage.hide();
+    }
+
+    @FXML
+    private void onResultsClicked(MouseEvent event) {
+        if (event.getClickCount() == 2) {
+            choose();
+        }
+    }
+
+    private void choose() {
+        ClassNameIndex.Entry selected = results.getSelectionModel().getSelectedItem();
+        if (selected == null && !results.getItems().isEmpty()) {
+            selected = results.getItems().get(0);
+        }
+        if (selected != null) {
+            close();
+            onChosen.accept(selected);
+        }
+    }
+
+    private void search() {
+        int current = generation.incrementAndGet();
+        String text = query.getText();
+        boolean withPath = includePath.isSelected();
+        searcher.submit(() -> classNameIndex.search(text, withPath, MAX_RESULTS, () -> generation.get() != current, found -> show(current, found)));
+    }
+
+    private void show(int current, List<ClassNameIndex.Entry> found) {
+        Platform.runLater(() -> {
+            if (generation.get() == current && !results.getItems().equals(found)) {
+                ClassNameIndex.Entry selected = results.getSelectionModel().getSelectedItem();
+                results.getItems().setAll(found);
+                if (!found.isEmpty()) {
+                    results.getSelectionModel().select(found.contains(selected) ? found.indexOf(selected) : 0);
+                }
+            }
+        });
+    }
+}
@@ -21,14 +21,19 @@ import com.google.common.eventbus.EventBus;
 import com.google.inject.Inject;
 import com.google.inject.name.Named;
 import com.heliosdecompiler.helios.Settings;
+import com.heliosdecompiler.helios.controller.PathController;
 import com.heliosdecompiler.helios.controller.ProcessController;
+import com.heliosdecompiler.helios.controller.files.OpenedFile;
 import com.heliosdecompiler.helios.controller.files.OpenedFileController;
 import com.heliosdecompiler.helios.controller.ui.UserInterfaceController;
 import com.heliosdecompiler.helios.Message;
+import com.heliosdecompiler.helios.gui.model.TreeNode;
 import com.heliosdecompiler.helios.ui.MessageHandler;
 import com.heliosdecompiler.helios.ui.views.file.FileFilter;
+import javafx.application.Platform;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
+import javafx.scene.control.CheckMenuItem;
 import javafx.scene.control.MenuBar;
 import javafx.scene.input.KeyCode;
 import javafx.scene.input.KeyEvent;
@@ -43,6 +48,15 @@ public class MenuBarController extends NestedController<MainViewController> {
     @FXML
     private MenuBar root;
 
+    @FXML
+    private CheckMenuItem includeJdk;
+
+    @FXML
+    private CheckMenuItem decompileInWorkers;
+
+    @FXML
+    private CheckMenuItem compactPackages;
+
     @Inject
     private EventBus eventBus;
 
@@ -57,6 +71,7 @@ public class MenuBarController extends NestedController<MainViewController> {
 
     private PathEditorController pathEditorController;
     private TransformerSettingsController transformerSettingsController;
+    private GoToClassController goToClassController;
 
     @Inject
     private OpenedFileController openedFileController;
@@ -67,6 +82,9 @@ public class MenuBarController extends NestedController<MainViewController> {
     @Inject
     private ProcessController processController;
 
+    @Inject
+    private PathController pathController;
+
     @Inject
     @Named(value = "mainStage")
     private Stage stage;
@@ -83,6 +101,11 @@ public class MenuBarController extends NestedController<MainViewController> {
                 onReset();
             }
         });
+        stage.addEventFilter(KeyEvent.KEY_RELEASED, event -> {
+            if (event.isShortcutDown() && event.isShiftDown() && event.getCode() == KeyCode.T) {
+                onGoToClass();
+            }
+        });
         stage.addEventFilter(KeyEvent.KEY_RELEASED, event -> {
             if (event.getCode() == KeyCode.F5) {
                 getParentController().getFileTreeController().reload();
@@ -101,6 +124,16 @@ public class MenuBarController extends NestedController<MainViewController> {
         } catch (IOException ex) {
             messageHandler.handleException(Message.ERROR_UNKNOWN_ERROR.format(), ex);
         }
+        try {
+            GuiceFXMLLoader.Result result = loader.load(getClass().getResource("/views/goToClass.fxml"));
+            goToClassController = result.getController();
+        } catch (IOException ex) {
+            messageHandler.handleException(Message.ERROR_UNKNOWN_ERROR.format(), ex);
+        }
+
+        includeJdk.setSelected(configuration.getBoolean(Settings.INCLUDE_JDK_KEY, true));
+        decompileInWorkers.setSelected(configuration.getBoolean(Settings.WORKERS_ENABLED_KEY, false));
+        compactPackages.setSelected(configuration.getBoolean(Settings.FILETREE_COMPACT_KEY, false));
 
         // for mac (and maybe linux once java supports it)
         // todo refactor into UIController
@@ -131,6 +164,57 @@ public class MenuBarController extends NestedController<MainViewController> {
         pathEditorController.open();
     }
 
+    @FXML
+    private void toggleIncludeJdk(ActionEvent event) {
+        configuration.setProperty(Settings.INCLUDE_JDK_KEY, includeJdk.isSelected());
+        pathController.reload();
+    }
+
+    @FXML
+    private void toggleDecompileInWorkers(ActionEvent event) {
+        configuration.setProperty(Settings.WORKERS_ENABLED_KEY, decompileInWorkers.isSelected());
+    }
+
+    @FXML
+    private void toggleCompactPackages(ActionEvent event) {
+        configuration.setProperty(Settings.FILETREE_COMPACT_KEY, compactPackages.isSelected());
+        getParentController().getFileTreeController().reload();
+    }
+
+    @FXML
+    private void onGoToClassClicked(ActionEvent event) {
+        onGoToClass();
+    }
+
+    public void onGoToClass() {
+        goToClassController.open(entry -> {
+            if (!entry.isOnPath()) {
+                openClass(entry.getFile(), entry.getPath());
+                return;
+            }
+
+            // classes on the path are opened by opening the file they are in first
+            for (OpenedFile loaded : openedFileController.getLoadedFiles()) {
+                if (loaded.getTarget().equals(entry.getFile().getTarget())) {
+                    openClass(loaded, entry.getPath());
+                    return;
+                }
+            }
+            openedFileController.openFile(entry.getFile().getTarget().toFile()).thenAccept(added -> {
+                Platform.runLater(() -> openClass(added, entry.getPath()));
+            });
+        });
+    }
+
+    private void openClass(OpenedFile file, String path) {
+        TreeNode node = file.getNode(path);
+        if (node == null) {
+            return;
+        }
+        getParentController().getFileTreeController().reveal(node);
+        getParentController().getAllFilesViewerController().handleClick(node);
+    }
+
     @FXML
     private void onNewClicked(ActionEvent event) {
         onReset();
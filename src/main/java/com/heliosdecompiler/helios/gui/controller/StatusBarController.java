@@ -22,6 +22,7 @@ import com.heliosdecompiler.helios.Constants;
 import com.heliosdecompiler.helios.Message;
 import com.heliosdecompiler.helios.controller.backgroundtask.BackgroundTask;
 import com.heliosdecompiler.helios.controller.backgroundtask.BackgroundTaskHelper;
+import com.heliosdecompiler.helios.gui.view.editors.HighlightingExecutor;
 import com.heliosdecompiler.helios.ui.MessageHandler;
 import javafx.application.Platform;
 import javafx.collections.ListChangeListener;
@@ -44,6 +45,9 @@ public class StatusBarController extends NestedController<MainViewController> {
     @FXML
     private ProgressBar memUsage;
 
+    @FXML
+    private Label highlightLabel;
+
     @Inject
     private BackgroundTaskHelper backgroundTaskHelper;
 
@@ -68,9 +72,13 @@ public class StatusBarController extends NestedController<MainViewController> {
             while (true) {
                 int used = Constants.USED_MEMORY.get();
                 int total = Constants.TOTAL_MEMORY.get();
+                int highlighting = HighlightingExecutor.getQueueDepth() + HighlightingExecutor.getRunning();
+                String highlightingStats = HighlightingExecutor.describe();
                 Platform.runLater(() -> {
                     memUsage.setProgress(used * 1.0 / total);
                     memUsage.getTooltip().setText(used + "MB/" + total + "MB");
+                    highlightLabel.setText(highlighting == 0 ? "" : "Highlighting " + highlighting + " (" + HighlightingExecutor.getLastLatencyMillis() + "ms)");
+                    highlightLabel.getTooltip().setText(highlightingStats);
                 });
                 try {
                     Thread.sleep(500);
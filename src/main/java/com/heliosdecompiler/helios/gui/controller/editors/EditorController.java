@@ -19,7 +19,10 @@ package com.heliosdecompiler.helios.gui.controller.editors;
 import com.google.inject.Inject;
 import com.google.inject.Injector;
 import com.google.inject.Singleton;
+import com.heliosdecompiler.helios.Settings;
 import com.heliosdecompiler.helios.controller.transformers.decompilers.CFRDecompilerController;
+import com.heliosdecompiler.helios.controller.transformers.decompilers.DecompilerController;
+import com.heliosdecompiler.helios.controller.transformers.decompilers.DecompilerFallbackChain;
 import com.heliosdecompiler.helios.controller.transformers.decompilers.FernflowerDecompilerController;
 import com.heliosdecompiler.helios.controller.transformers.decompilers.KrakatauDecompilerController;
 import com.heliosdecompiler.helios.controller.transformers.decompilers.ProcyonDecompilerController;
@@ -28,11 +31,12 @@ import com.heliosdecompiler.helios.controller.transformers.disassemblers.Krakata
 import com.heliosdecompiler.helios.controller.transformers.disassemblers.ProcyonDisassemblerController;
 import com.heliosdecompiler.helios.gui.view.editors.DecompilerView;
 import com.heliosdecompiler.helios.gui.view.editors.EditorView;
+import com.heliosdecompiler.helios.gui.view.editors.FallbackDecompilerView;
+import com.heliosdecompiler.helios.gui.view.editors.RaceDecompilerView;
 import com.heliosdecompiler.helios.gui.view.editors.StandardEditors;
+import org.apache.commons.configuration2.Configuration;
 
-import java.util.Collection;
-import java.util.LinkedHashMap;
-import java.util.Map;
+import java.util.*;
 
 @Singleton
 public class EditorController {
@@ -48,11 +52,26 @@ public class EditorController {
         registerEditor(new DecompilerView(injector.getInstance(ProcyonDecompilerController.class)));
         registerEditor(new DecompilerView(injector.getInstance(FernflowerDecompilerController.class)));
         registerEditor(new DecompilerView(injector.getInstance(KrakatauDecompilerController.class)));
+        registerEditor(createRaceView(injector));
+        registerEditor(new FallbackDecompilerView(injector.getInstance(DecompilerFallbackChain.class)));
         registerEditor(disassemblerViewFactory.createDisassemblerView(injector.getInstance(KrakatauDisassemblerController.class)));
         registerEditor(disassemblerViewFactory.createDisassemblerView((injector.getInstance(JavapDisassemblerController.class))));
         registerEditor(disassemblerViewFactory.createDisassemblerView((injector.getInstance(ProcyonDisassemblerController.class))));
     }
 
+    private EditorView createRaceView(Injector injector) {
+        Configuration configuration = injector.getInstance(Configuration.class);
+        String preferred = configuration.getString(Settings.RACE_PREFERRED_KEY, "cfr");
+
+        List<DecompilerController<?>> controllers = new ArrayList<>();
+        controllers.add(injector.getInstance(CFRDecompilerController.class));
+        controllers.add(injector.getInstance(ProcyonDecompilerController.class));
+        controllers.add(injector.getInstance(FernflowerDecompilerController.class));
+        controllers.sort(Comparator.comparing(controller -> !controller.getInternalName().equals(preferred)));
+
+        return new RaceDecompilerView(controllers, configuration.getLong(Settings.RACE_GRACE_PERIOD_KEY, 2000));
+    }
+
     public void registerEditor(EditorView editorView) {
         if (!registeredEditors.containsKey(editorView.getDisplayName())) {
             registeredEditors.put(editorView.getDisplayName(), editorView);
@@ -25,6 +25,7 @@ import javafx.scene.control.ContextMenu;
 import javafx.scene.control.MenuItem;
 import javafx.scene.control.TreeCell;
 import javafx.scene.control.TreeItem;
+import javafx.scene.image.ImageView;
 import javafx.scene.layout.HBox;
 
 import java.lang.ref.WeakReference;
@@ -61,7 +62,14 @@ public class DefaultTreeCell<T> extends TreeCell<T> {
 
     private Function<T, ContextMenu> contextMenuFunction;
 
+    private TreeIconRegistry iconRegistry;
+    private ImageView icon;
+
     public DefaultTreeCell(Function<T, ContextMenu> contextMenuFunction) {
+        this(null, contextMenuFunction);
+    }
+
+    public DefaultTreeCell(TreeIconRegistry iconRegistry, Function<T, ContextMenu> contextMenuFunction) {
         treeItemProperty().addListener(weakTreeItemListener);
 
         if (getTreeItem() != null) {
@@ -69,6 +77,7 @@ public class DefaultTreeCell<T> extends TreeCell<T> {
         }
 
         this.contextMenuFunction = contextMenuFunction;
+        this.iconRegistry = iconRegistry;
     }
 
     void updateDisplay(T item, boolean empty) {
@@ -101,6 +110,14 @@ public class DefaultTreeCell<T> extends TreeCell<T> {
                 if (item instanceof Node) {
                     setText(null);
                     setGraphic((Node) item);
+                } else if (iconRegistry != null && item instanceof TreeNode) {
+                    // cells are reused, so one view per cell is enough and the image itself is shared
+                    if (icon == null) {
+                        icon = new ImageView();
+                    }
+                    icon.setImage(iconRegistry.getIcon((TreeNode) item));
+                    setText(((TreeNode) item).getDisplayName());
+                    setGraphic(icon);
                 } else {
                     setText(item instanceof TreeNode ? ((TreeNode) item).getDisplayName() : item.toString());
                     setGraphic(null);
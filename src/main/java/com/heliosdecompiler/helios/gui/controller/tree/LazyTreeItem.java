@@ -0,0 +1,147 @@
+/*
+ * Copyright 2017 Sam Sun <github-contact@samczsun.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.heliosdecompiler.helios.gui.controller.tree;
+
+import com.heliosdecompiler.helios.gui.model.TreeNode;
+import javafx.application.Platform;
+import javafx.collections.ObservableList;
+import javafx.scene.control.TreeItem;
+
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * A tree item which only creates the items for its children once they are first needed, usually when it is expanded.
+ * When the heap is running low, the children of collapsed items are thrown away again and recreated on the next expand
+ */
+public class LazyTreeItem extends TreeItem<TreeNode> {
+    private static final double MEMORY_PRESSURE = 0.75;
+
+    private static final Set<LazyTreeItem> LOADED = Collections.newSetFromMap(new WeakHashMap<>());
+    private static boolean discardScheduled;
+
+    private final Comparator<TreeNode> order;
+    private final Function<TreeNode, ? extends TreeItem<TreeNode>> factory;
+    private final Consumer<TreeItem<TreeNode>> onDiscarded;
+
+    private volatile boolean loaded;
+
+    public LazyTreeItem(TreeNode node, Comparator<TreeNode> order, Function<TreeNode, ? extends TreeItem<TreeNode>> factory, Consumer<TreeItem<TreeNode>> onDiscarded) {
+        super(node);
+        this.order = order;
+        this.factory = factory;
+        this.onDiscarded = onDiscarded;
+    }
+
+    @Override
+    public boolean isLeaf() {
+        return getValue().getChildren().isEmpty();
+    }
+
+    @Override
+    public ObservableList<TreeItem<TreeNode>> getChildren() {
+        if (!loaded) {
+            if (!Platform.isFxApplicationThread()) {
+                throw new IllegalStateException("Tree items can only be loaded on the FX thread");
+            }
+            loaded = true;
+            if (isUnderMemoryPressure()) {
+                scheduleDiscard();
+            }
+
+            List<TreeNode> nodes = new ArrayList<>(getValue().getChildren());
+            nodes.sort(order);
+            List<TreeItem<TreeNode>> items = new ArrayList<>(nodes.size());
+            for (TreeNode node : nodes) {
+                items.add(factory.apply(node));
+            }
+            // anything attached while this item was not loaded is replaced, along with what was loaded below it
+            forget(super.getChildren());
+            super.getChildren().setAll(items);
+            LOADED.add(this);
+        }
+        return super.getChildren();
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    private void discard() {
+        forget(super.getChildren());
+        super.getChildren().clear();
+        loaded = false;
+        LOADED.remove(this);
+    }
+
+    /**
+     * Reports the items and everything loaded below them as discarded, and unloads them
+     */
+    private void forget(List<TreeItem<TreeNode>> items) {
+        ArrayDeque<TreeItem<TreeNode>> queue = new ArrayDeque<>(items);
+        while (!queue.isEmpty()) {
+            TreeItem<TreeNode> item = queue.pop();
+            onDiscarded.accept(item);
+            if (item instanceof LazyTreeItem) {
+                LazyTreeItem lazy = (LazyTreeItem) item;
+                if (lazy.loaded) {
+                    queue.addAll(lazy.superChildren());
+                    lazy.loaded = false;
+                    LOADED.remove(lazy);
+                }
+            } else {
+                queue.addAll(item.getChildren());
+            }
+        }
+    }
+
+    private List<TreeItem<TreeNode>> superChildren() {
+        return super.getChildren();
+    }
+
+    /**
+     * Discards in a pass of its own, since whoever is loading this item may be in the middle of walking or laying out
+     * other branches
+     */
+    private static void scheduleDiscard() {
+        if (!discardScheduled) {
+            discardScheduled = true;
+            Platform.runLater(() -> {
+                discardScheduled = false;
+                discardCollapsed();
+            });
+        }
+    }
+
+    /**
+     * Throws away the children of every collapsed item. Must be called on the FX thread
+     */
+    public static void discardCollapsed() {
+        for (LazyTreeItem item : new ArrayList<>(LOADED)) {
+            if (item.loaded && !item.isExpanded()) {
+                item.discard();
+            }
+        }
+    }
+
+    private static boolean isUnderMemoryPressure() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = runtime.totalMemory() - runtime.freeMemory();
+        return used > runtime.maxMemory() * MEMORY_PRESSURE;
+    }
+}
@@ -25,6 +25,7 @@ import java.util.function.Function;
 
 public class TreeCellFactory<T> implements Callback<TreeView<T>, TreeCell<T>> {
 
+    private final TreeIconRegistry iconRegistry;
     private final Function<T, ContextMenu> contextMenuFunction;
 
     public TreeCellFactory() {
@@ -32,11 +33,16 @@ public class TreeCellFactory<T> implements Callback<TreeView<T>, TreeCell<T>> {
     }
 
     public TreeCellFactory(Function<T, ContextMenu> contextMenuFunction) {
+        this(null, contextMenuFunction);
+    }
+
+    public TreeCellFactory(TreeIconRegistry iconRegistry, Function<T, ContextMenu> contextMenuFunction) {
+        this.iconRegistry = iconRegistry;
         this.contextMenuFunction = contextMenuFunction;
     }
 
     @Override
     public TreeCell<T> call(TreeView<T> param) {
-        return new DefaultTreeCell<>(contextMenuFunction);
+        return new DefaultTreeCell<>(iconRegistry, contextMenuFunction);
     }
 }
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2017 Sam Sun <github-contact@samczsun.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.heliosdecompiler.helios.gui.controller.tree;
+
+import com.google.inject.Singleton;
+import com.heliosdecompiler.helios.controller.files.OpenedFile;
+import com.heliosdecompiler.helios.gui.model.TreeNode;
+import javafx.scene.image.Image;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Decodes every tree icon once and hands out the same image for every node of the same kind
+ */
+@Singleton
+public class TreeIconRegistry {
+    public static final String JAR = "jar";
+    public static final String PACKAGE = "package";
+    public static final String CLASS = "class";
+    public static final String FILE = "file";
+
+    private final Map<String, Image> icons = new ConcurrentHashMap<>();
+    private final Map<String, String> extensions = new ConcurrentHashMap<>();
+
+    public TreeIconRegistry() {
+        register(JAR, "/res/jar.png");
+        register(PACKAGE, "/res/package.png");
+        register(CLASS, "/res/class.png");
+        register(FILE, "/res/file.png");
+
+        registerExtension("jar", JAR);
+        registerExtension("class", CLASS);
+    }
+
+    /**
+     * Registers the icon of a kind, replacing the previous one
+     */
+    public void register(String kind, String resource) {
+        try (InputStream in = getClass().getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IllegalArgumentException("Missing icon " + resource);
+            }
+            icons.put(kind, new Image(in));
+        } catch (IOException ex) {
+            throw new IllegalArgumentException("Could not load icon " + resource, ex);
+        }
+    }
+
+    /**
+     * Files ending in the given extension (without the dot) are shown as the given kind
+     */
+    public void registerExtension(String extension, String kind) {
+        extensions.put(extension.toLowerCase(), kind);
+    }
+
+    public String getKind(TreeNode node) {
+        boolean root = node.testFlag(OpenedFile.IS_ROOT_FILE);
+        if (!root && node.getChildren().size() > 0) {
+            return PACKAGE;
+        }
+
+        String name = node.getDisplayName();
+        int dot = name.lastIndexOf('.');
+        String kind = dot == -1 ? null : extensions.get(name.substring(dot + 1).toLowerCase());
+        if (kind == null || !icons.containsKey(kind) || (root && kind.equals(CLASS))) {
+            return FILE;
+        }
+        return kind;
+    }
+
+    public Image getIcon(TreeNode node) {
+        return icons.get(getKind(node));
+    }
+}
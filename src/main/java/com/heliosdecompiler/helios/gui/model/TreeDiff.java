@@ -0,0 +1,106 @@
+/*
+ * Copyright 2017 Sam Sun <github-contact@samczsun.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.heliosdecompiler.helios.gui.model;
+
+import java.util.*;
+
+/**
+ * The difference between two versions of a tree, matching nodes by their path. Only the topmost node of an added or
+ * removed subtree is reported
+ */
+public class TreeDiff {
+    private final List<TreeNode> added = new ArrayList<>();
+    private final List<TreeNode> removed = new ArrayList<>();
+    private final Map<String, TreeNode> updated = new HashMap<>();
+
+    private TreeDiff() {
+    }
+
+    /**
+     * Either root may be null, in which case everything in the other tree is added or removed
+     */
+    public static TreeDiff compute(TreeNode previous, TreeNode current) {
+        TreeDiff diff = new TreeDiff();
+
+        Map<String, TreeNode> previousNodes = index(previous);
+
+        ArrayDeque<TreeNode> queue = new ArrayDeque<>();
+        if (current != null) {
+            queue.add(current);
+        }
+        while (!queue.isEmpty()) {
+            TreeNode node = queue.pop();
+            TreeNode existing = previousNodes.get(node.getPath());
+            if (existing != null && sameParent(existing, node)) {
+                diff.updated.put(node.getPath(), node);
+                queue.addAll(node.getChildren());
+            } else {
+                diff.added.add(node);
+            }
+        }
+
+        if (previous != null) {
+            queue.add(previous);
+        }
+        while (!queue.isEmpty()) {
+            TreeNode node = queue.pop();
+            if (diff.updated.containsKey(node.getPath())) {
+                queue.addAll(node.getChildren());
+            } else {
+                diff.removed.add(node);
+            }
+        }
+
+        return diff;
+    }
+
+    private static boolean sameParent(TreeNode a, TreeNode b) {
+        if (a.getParent() == null || b.getParent() == null) {
+            return a.getParent() == b.getParent();
+        }
+        return a.getParent().getPath().equals(b.getParent().getPath());
+    }
+
+    private static Map<String, TreeNode> index(TreeNode root) {
+        Map<String, TreeNode> nodes = new HashMap<>();
+        ArrayDeque<TreeNode> queue = new ArrayDeque<>();
+        if (root != null) {
+            queue.add(root);
+        }
+        while (!queue.isEmpty()) {
+            TreeNode node = queue.pop();
+            nodes.put(node.getPath(), node);
+            queue.addAll(node.getChildren());
+        }
+        return nodes;
+    }
+
+    public List<TreeNode> getAdded() {
+        return added;
+    }
+
+    public List<TreeNode> getRemoved() {
+        return removed;
+    }
+
+    /**
+     * @return the nodes of the current tree which also exist in the previous one
+     */
+    public Collection<TreeNode> getUpdated() {
+        return updated.values();
+    }
+}
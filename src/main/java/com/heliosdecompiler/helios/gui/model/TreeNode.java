@@ -16,8 +16,6 @@
 
 package com.heliosdecompiler.helios.gui.model;
 
-import com.google.common.base.Objects;
-
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
@@ -26,17 +24,20 @@ public class TreeNode {
 
     private final String displayName;
     private final TreeNode parent;
+    private final String path;
     private final Map<String, TreeNode> children = new HashMap<>(0);
     private final Map<String, Object> metadata = new HashMap<>(0);
 
     public TreeNode(String displayName) {
         this.parent = null;
         this.displayName = displayName;
+        this.path = String.valueOf(displayName);
     }
 
     public TreeNode(TreeNode parent, String displayName) {
         this.displayName = displayName;
         this.parent = parent;
+        this.path = parent == null ? String.valueOf(displayName) : parent.path + "/" + displayName;
     }
 
     public String getDisplayName() {
@@ -47,6 +48,13 @@ public class TreeNode {
         return this.parent;
     }
 
+    /**
+     * @return the display names from the root down to this node, joined by '/'
+     */
+    public String getPath() {
+        return this.path;
+    }
+
     public Collection<TreeNode> getChildren() {
         return children.values();
     }
@@ -78,12 +86,11 @@ public class TreeNode {
         if (this == o) return true;
         if (!(o instanceof TreeNode)) return false;
         TreeNode treeNode = (TreeNode) o;
-        return Objects.equal(displayName, treeNode.displayName) &&
-                Objects.equal(parent, treeNode.parent);
+        return path.equals(treeNode.path);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hashCode(displayName, parent);
+        return path.hashCode();
     }
 }
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2017 Sam Sun <github-contact@samczsun.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.heliosdecompiler.helios.gui.model;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Finds nodes whose display name contains a string, case insensitively, without walking the tree. Every name is indexed
+ * by all of its substrings of up to three characters. Each root is indexed separately, so loading or reloading a file
+ * only rebuilds its own part of the index, and searching never waits for that to finish
+ */
+public class TreeSearchIndex {
+    private static final int GRAM = 3;
+
+    private final Map<String, Segment> segments = new ConcurrentHashMap<>();
+
+    /**
+     * Indexes every node below (and including) the given root, replacing what was indexed for it before
+     */
+    public void update(TreeNode root) {
+        segments.put(root.getPath(), new Segment(root));
+    }
+
+    public void remove(TreeNode root) {
+        segments.remove(root.getPath());
+    }
+
+    /**
+     * @return at most limit nodes, exact matches first, then prefixes, then matches at the start of a word, then the
+     * rest, shorter names first
+     */
+    public List<TreeNode> search(String query, int limit) {
+        if (query.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+        String needle = query.toLowerCase();
+
+        PriorityQueue<Match> best = new PriorityQueue<>(Collections.reverseOrder());
+        for (Segment segment : segments.values()) {
+            segment.search(needle, match -> {
+                if (best.size() < limit) {
+                    best.add(match);
+                } else if (match.compareTo(best.peek()) < 0) {
+                    best.poll();
+                    best.add(match);
+                }
+            });
+        }
+
+        List<Match> sorted = new ArrayList<>(best);
+        Collections.sort(sorted);
+        List<TreeNode> result = new ArrayList<>(sorted.size());
+        for (Match match : sorted) {
+            result.add(match.node);
+        }
+        return result;
+    }
+
+    private static long gram(String s, int start, int length) {
+        long key = length;
+        for (int i = start; i < start + length; i++) {
+            key = (key << 16) | s.charAt(i);
+        }
+        return key;
+    }
+
+    private static final class Segment {
+        private final TreeNode[] nodes;
+        private final String[] names;
+        private final Map<Long, int[]> grams = new HashMap<>();
+
+        Segment(TreeNode root) {
+            List<TreeNode> nodes = new ArrayList<>();
+            ArrayDeque<TreeNode> queue = new ArrayDeque<>();
+            queue.add(root);
+            while (!queue.isEmpty()) {
+                TreeNode node = queue.pop();
+                nodes.add(node);
+                queue.addAll(node.getChildren());
+            }
+            this.nodes = nodes.toArray(new TreeNode[0]);
+            this.names = new String[this.nodes.length];
+
+            Map<Long, List<Integer>> postings = new HashMap<>();
+            Set<Long> seen = new HashSet<>();
+            for (int id = 0; id < this.nodes.length; id++) {
+                String name = String.valueOf(this.nodes[id].getDisplayName()).toLowerCase();
+                names[id] = name;
+                seen.clear();
+                for (int length = 1; length <= GRAM; length++) {
+                    for (int start = 0; start + length <= name.length(); start++) {
+                        long key = gram(name, start, length);
+                        if (seen.add(key)) {
+                            postings.computeIfAbsent(key, k -> new ArrayList<>()).add(id);
+                        }
+                    }
+                }
+            }
+            for (Map.Entry<Long, List<Integer>> entry : postings.entrySet()) {
+                List<Integer> ids = entry.getValue();
+                int[] array = new int[ids.size()];
+                for (int i = 0; i < array.length; i++) {
+                    array[i] = ids.get(i);
+                }
+                grams.put(entry.getKey(), array);
+            }
+        }
+
+        void search(String needle, Consumer<Match> matches) {
+            int[] candidates;
+            if (needle.length() <= GRAM) {
+                candidates = grams.get(gram(needle, 0, needle.length()));
+            } else {
+                // the rarest trigram of the query narrows the candidates the most, the rest is checked directly
+                candidates = null;
+                for (int start = 0; start + GRAM <= needle.length(); start++) {
+                    int[] postings = grams.get(gram(needle, start, GRAM));
+                    if (postings == null) {
+                        return;
+                    }
+                    if (candidates == null || postings.length < candidates.length) {
+                        candidates = postings;
+                    }
+                }
+            }
+            if (candidates == null) {
+                return;
+            }
+
+            for (int id : candidates) {
+                String name = names[id];
+                int index = name.indexOf(needle);
+                if (index != -1) {
+                    matches.accept(new Match(nodes[id], rank(name, needle, index), name.length()));
+                }
+            }
+        }
+
+        private static int rank(String name, String needle, int index) {
+            if (index == 0) {
+                return name.length() == needle.length() ? 0 : 1;
+            }
+            return Character.isLetterOrDigit(name.charAt(index - 1)) ? 3 : 2;
+        }
+    }
+
+    private static final class Match implements Comparable<Match> {
+        private final TreeNode node;
+        private final int rank;
+        private final int length;
+
+        Match(TreeNode node, int rank, int length) {
+            this.node = node;
+            this.rank = rank;
+            this.length = length;
+        }
+
+        @Override
+        public int compareTo(Match o) {
+            if (rank != o.rank) {
+                return Integer.compare(rank, o.rank);
+            }
+            if (length != o.length) {
+                return Integer.compare(length, o.length);
+            }
+            return node.getPath().compareTo(o.node.getPath());
+        }
+    }
+}
@@ -16,27 +16,32 @@
 
 package com.heliosdecompiler.helios.gui.view.editors;
 
+import com.heliosdecompiler.helios.controller.classpath.ClassReferences;
 import com.heliosdecompiler.helios.controller.files.OpenedFile;
+import com.heliosdecompiler.helios.controller.transformers.decompilers.DecompileRequest;
 import com.heliosdecompiler.helios.controller.transformers.decompilers.DecompilerController;
+import javafx.animation.AnimationTimer;
 import javafx.application.Platform;
-import javafx.concurrent.Task;
 import javafx.scene.Node;
+import javafx.scene.control.ComboBox;
 import javafx.scene.input.ScrollEvent;
+import javafx.scene.layout.BorderPane;
 import org.fxmisc.flowless.VirtualizedScrollPane;
 import org.fxmisc.richtext.CodeArea;
 import org.fxmisc.richtext.LineNumberFactory;
-import org.fxmisc.richtext.model.StyleSpans;
-import org.fxmisc.richtext.model.StyleSpansBuilder;
 
-import java.time.Duration;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.Optional;
-import java.util.concurrent.Executors;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
 
 public class DecompilerView extends EditorView {
+    private static final String ENTIRE_CLASS = "(Entire class)";
+    private static final int CHUNK_LINES = 250;
+    private static final int LARGE_CLASS_BYTES = 128 * 1024;
+    private static final long FRAME_BUDGET = TimeUnit.MILLISECONDS.toNanos(8);
 
     private DecompilerController<?> controller;
 
@@ -44,6 +49,10 @@ public class DecompilerView extends EditorView {
         this.controller = controller;
     }
 
+    public DecompilerController<?> getController() {
+        return controller;
+    }
+
     @Override
     public boolean canSave() {
         return false;
@@ -60,20 +69,7 @@ public class DecompilerView extends EditorView {
         codeArea.replaceText("Decompiling... this may take a while");
         codeArea.getUndoManager().forgetHistory();
 
-        codeArea.richChanges()
-                .filter(ch -> !ch.getInserted().equals(ch.getRemoved())) // XXX
-                .successionEnds(Duration.ofMillis(500))
-                .supplyTask(() -> computeHighlightingAsync(codeArea))
-                .awaitLatest(codeArea.richChanges())
-                .filterMap(t -> {
-                    if (t.isSuccess()) {
-                        return Optional.of(t.get());
-                    } else {
-                        t.getFailure().printStackTrace();
-                        return Optional.empty();
-                    }
-                })
-                .subscribe(f -> applyHighlighting(codeArea, f));
+        IncrementalHighlighter.install(codeArea);
 
         codeArea.getStylesheets().add(getClass().getResource("/java-keywords.css").toExternalForm());
 
@@ -94,91 +90,144 @@ public class DecompilerView extends EditorView {
             }
         });
 
-        controller.decompile(file, path, (success, text) -> {
-            Platform.runLater(() -> {
-                codeArea.replaceText(text);
-                codeArea.getUndoManager().forgetHistory();
-            });
+        // Bumped whenever something else is requested, so that output which is no longer wanted gets dropped
+        AtomicInteger requested = new AtomicInteger();
+        // Bumped for every output shown, so that only one streamer ever writes to the area. A request may display more
+        // than once, for example when a race is won by a faster decompiler and then replaced by the preferred one
+        AtomicInteger current = new AtomicInteger();
+        AtomicReference<DecompileRequest> running = new AtomicReference<>();
+        byte[] data = file.getContent(path);
+        // Decompiling all of a huge class can take minutes, so let the user pick a single method first
+        boolean deferred = supportsMethodScope() && data != null && data.length > LARGE_CLASS_BYTES;
+        if (deferred) {
+            codeArea.replaceText("This class is very large. Pick a method above, or " + ENTIRE_CLASS + " to decompile all of it");
+            codeArea.getUndoManager().forgetHistory();
+        } else {
+            running.set(decompile(file, path, display(codeArea, requested, 0, current)));
+        }
+
+        VirtualizedScrollPane<CodeArea> scrollPane = new VirtualizedScrollPane<>(codeArea);
+        if (!supportsMethodScope()) {
+            return scrollPane;
+        }
+
+        ComboBox<String> methods = new ComboBox<>();
+        methods.getItems().add(ENTIRE_CLASS);
+        methods.getItems().addAll(ClassReferences.getMethodNames(data));
+        if (deferred) {
+            methods.setPromptText("Pick a method to decompile");
+        } else {
+            methods.getSelectionModel().select(0);
+        }
+        methods.setMaxWidth(Double.MAX_VALUE);
+        methods.setOnAction(event -> {
+            DecompileRequest previous = running.getAndSet(null);
+            if (previous != null) {
+                previous.cancel();
+            }
+            int request = requested.incrementAndGet();
+            current.incrementAndGet();
+            codeArea.replaceText("Decompiling... this may take a while");
+            codeArea.getUndoManager().forgetHistory();
+            BiConsumer<Boolean, String> display = display(codeArea, requested, request, current);
+            String method = methods.getValue();
+            if (method == null || method.equals(ENTIRE_CLASS)) {
+                running.set(decompile(file, path, display));
+            } else {
+                running.set(decompileMethod(file, path, method, display));
+            }
         });
 
-        return new VirtualizedScrollPane<>(codeArea);
+        BorderPane pane = new BorderPane(scrollPane);
+        pane.setTop(methods);
+        return pane;
     }
 
-    @Override
-    public String getDisplayName() {
-        return this.controller.getDisplayName();
+    private static BiConsumer<Boolean, String> display(CodeArea codeArea, AtomicInteger requested, int request, AtomicInteger current) {
+        return (success, text) -> {
+            if (requested.get() == request) {
+                new OutputStreamer(codeArea, current, current.incrementAndGet()).stream(text);
+            }
+        };
     }
 
+    /**
+     * @return the request, so that it can be cancelled once something else is picked, or null if it cannot be
+     */
+    protected DecompileRequest decompile(OpenedFile file, String path, BiConsumer<Boolean, String> display) {
+        return controller.decompile(file, path, display);
+    }
 
-    private Task<StyleSpans<Collection<String>>> computeHighlightingAsync(CodeArea codeArea) {
-        String text = codeArea.getText();
-        Task<StyleSpans<Collection<String>>> task = new Task<StyleSpans<Collection<String>>>() {
-            @Override
-            protected StyleSpans<Collection<String>> call() throws Exception {
-                return computeHighlighting(text);
-            }
-        };
-        Executors.newSingleThreadExecutor().execute(task);
-        return task;
+    protected boolean supportsMethodScope() {
+        return controller.supportsMethodScope();
     }
 
-    private void applyHighlighting(CodeArea codeArea, StyleSpans<Collection<String>> highlighting) {
-        codeArea.setStyleSpans(0, highlighting);
+    protected DecompileRequest decompileMethod(OpenedFile file, String path, String methodName, BiConsumer<Boolean, String> display) {
+        return controller.decompileMethod(file, path, methodName, display);
     }
 
-    private static StyleSpans<Collection<String>> computeHighlighting(String text) {
-        Matcher matcher = PATTERN.matcher(text);
-        int lastKwEnd = 0;
-        StyleSpansBuilder<Collection<String>> spansBuilder
-                = new StyleSpansBuilder<>();
-        while (matcher.find()) {
-            String styleClass =
-                    matcher.group("KEYWORD") != null ? "keyword" :
-                            matcher.group("PAREN") != null ? "paren" :
-                                    matcher.group("BRACE") != null ? "brace" :
-                                            matcher.group("BRACKET") != null ? "bracket" :
-                                                    matcher.group("SEMICOLON") != null ? "semicolon" :
-                                                            matcher.group("STRING") != null ? "string" :
-                                                                    matcher.group("COMMENT") != null ? "comment" :
-                                                                            null; /* never happens */
-            assert styleClass != null;
-            spansBuilder.add(Collections.emptyList(), matcher.start() - lastKwEnd);
-            spansBuilder.add(Collections.singleton(styleClass), matcher.end() - matcher.start());
-            lastKwEnd = matcher.end();
-        }
-        spansBuilder.add(Collections.emptyList(), text.length() - lastKwEnd);
-        return spansBuilder.create();
+    @Override
+    public String getDisplayName() {
+        return this.controller.getDisplayName();
     }
 
+    /**
+     * Splits decompiled output into chunks of whole lines and appends as many of them as fit in a frame on each
+     * pulse, so the first screen shows up right away and huge outputs never stall the UI. Highlighting catches up on
+     * its own, starting with whatever is on screen
+     */
+    private static class OutputStreamer extends AnimationTimer {
+        private final CodeArea codeArea;
+        private final AtomicInteger current;
+        private final int token;
+        private final Queue<String> chunks = new ConcurrentLinkedQueue<>();
+        private volatile boolean complete;
+        private boolean first = true;
+
+        OutputStreamer(CodeArea codeArea, AtomicInteger current, int token) {
+            this.codeArea = codeArea;
+            this.current = current;
+            this.token = token;
+        }
+
+        void stream(String text) {
+            Platform.runLater(() -> start());
+            int start = 0;
+            while (start < text.length() && current.get() == token) {
+                int end = start;
+                for (int lines = 0; lines < CHUNK_LINES && end < text.length(); lines++) {
+                    int newline = text.indexOf('\n', end);
+                    end = newline == -1 ? text.length() : newline + 1;
+                }
+                chunks.add(text.substring(start, end));
+                start = end;
+            }
+            if (text.isEmpty()) {
+                chunks.add(text);
+            }
+            complete = true;
+        }
 
-    private static final String[] KEYWORDS = new String[]{
-            "abstract", "assert", "boolean", "break", "byte",
-            "case", "catch", "char", "class", "const",
-            "continue", "default", "do", "double", "else",
-            "enum", "extends", "final", "finally", "float",
-            "for", "goto", "if", "implements", "import",
-            "instanceof", "int", "interface", "long", "native",
-            "new", "package", "private", "protected", "public",
-            "return", "short", "static", "strictfp", "super",
-            "switch", "synchronized", "this", "throw", "throws",
-            "transient", "try", "void", "volatile", "while"
-    };
-
-    private static final String KEYWORD_PATTERN = "\\b(" + String.join("|", KEYWORDS) + ")\\b";
-    private static final String PAREN_PATTERN = "\\(|\\)";
-    private static final String BRACE_PATTERN = "\\{|\\}";
-    private static final String BRACKET_PATTERN = "\\[|\\]";
-    private static final String SEMICOLON_PATTERN = "\\;";
-    private static final String STRING_PATTERN = "\"([^\"\\\\]|\\\\.)*\"";
-    private static final String COMMENT_PATTERN = "//[^\n]*" + "|" + "/\\*(.|\\R)*?\\*/";
-
-    private static final Pattern PATTERN = Pattern.compile(
-            "(?<KEYWORD>" + KEYWORD_PATTERN + ")"
-                    + "|(?<PAREN>" + PAREN_PATTERN + ")"
-                    + "|(?<BRACE>" + BRACE_PATTERN + ")"
-                    + "|(?<BRACKET>" + BRACKET_PATTERN + ")"
-                    + "|(?<SEMICOLON>" + SEMICOLON_PATTERN + ")"
-                    + "|(?<STRING>" + STRING_PATTERN + ")"
-                    + "|(?<COMMENT>" + COMMENT_PATTERN + ")"
-    );
+        @Override
+        public void handle(long now) {
+            if (current.get() != token) {
+                stop();
+                return;
+            }
+            long deadline = System.nanoTime() + FRAME_BUDGET;
+            String chunk;
+            while (System.nanoTime() < deadline && (chunk = chunks.poll()) != null) {
+                if (first) {
+                    codeArea.replaceText(chunk);
+                    first = false;
+                } else {
+                    codeArea.appendText(chunk);
+                }
+            }
+            if (complete && chunks.isEmpty()) {
+                codeArea.getUndoManager().forgetHistory();
+                stop();
+            }
+        }
+    }
 }
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2017 Sam Sun <github-contact@samczsun.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.heliosdecompiler.helios.gui.view.editors;
+
+import com.heliosdecompiler.helios.controller.files.OpenedFile;
+import com.heliosdecompiler.helios.controller.transformers.decompilers.DecompileRequest;
+import com.heliosdecompiler.helios.controller.transformers.decompilers.DecompilerFallbackChain;
+
+import java.util.function.BiConsumer;
+
+public class FallbackDecompilerView extends DecompilerView {
+    private final DecompilerFallbackChain chain;
+
+    public FallbackDecompilerView(DecompilerFallbackChain chain) {
+        super(chain.getChain().get(0));
+        this.chain = chain;
+    }
+
+    @Override
+    protected DecompileRequest decompile(OpenedFile file, String path, BiConsumer<Boolean, String> display) {
+        chain.decompile(file, path, display);
+        return null;
+    }
+
+    @Override
+    protected boolean supportsMethodScope() {
+        return false;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "Decompiler Fallback Chain";
+    }
+}
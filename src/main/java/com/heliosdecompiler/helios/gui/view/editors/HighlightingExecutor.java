@@ -0,0 +1,163 @@
+/*
+ * Copyright 2017 Sam Sun <github-contact@samczsun.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.heliosdecompiler.helios.gui.view.editors;
+
+import javafx.concurrent.Task;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs syntax highlighting for every editor on a few low priority threads. Each editor only ever has one job that
+ * matters, so submitting a new one cancels the one before it, and when too many pile up the oldest are dropped
+ */
+public final class HighlightingExecutor {
+    private static final int THREADS = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    private static final int QUEUE_CAPACITY = 32;
+
+    private static final AtomicLong SUBMITTED = new AtomicLong();
+    private static final AtomicLong SUPERSEDED = new AtomicLong();
+    private static final AtomicLong DROPPED = new AtomicLong();
+    private static final AtomicLong COMPLETED = new AtomicLong();
+    private static final AtomicLong TOTAL_LATENCY = new AtomicLong();
+    private static volatile long lastLatency;
+    private static volatile long maxLatency;
+
+    private static final ThreadPoolExecutor EXECUTOR = new ThreadPoolExecutor(THREADS, THREADS, 30, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(QUEUE_CAPACITY), runnable -> {
+        Thread thread = new Thread(runnable, "Syntax Highlighting");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    }, (runnable, executor) -> {
+        Runnable oldest = executor.getQueue().poll();
+        if (oldest instanceof Future) {
+            ((Future<?>) oldest).cancel(false);
+            DROPPED.incrementAndGet();
+        }
+        executor.execute(runnable);
+    });
+
+    private static final Map<Object, Future<?>> LATEST = new WeakHashMap<>();
+
+    static {
+        EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+
+    private HighlightingExecutor() {
+    }
+
+    /**
+     * Queues a highlighting job for the given editor, cancelling the previous job for the same editor. A job dropped
+     * because the queue is full ends up cancelled, and its owner should not resubmit it until something changes
+     */
+    public static <T> Task<T> submit(Object owner, Callable<T> job) {
+        long queued = System.nanoTime();
+        Task<T> task = new Task<T>() {
+            @Override
+            protected T call() throws Exception {
+                T result = job.call();
+                record(System.nanoTime() - queued);
+                return result;
+            }
+
+            // The task's handlers usually reach the owner, which would keep its weak key alive forever, so the entry
+            // goes away however the task ends
+
+            @Override
+            protected void succeeded() {
+                forget(owner, this);
+            }
+
+            @Override
+            protected void failed() {
+                forget(owner, this);
+            }
+
+            @Override
+            protected void cancelled() {
+                forget(owner, this);
+            }
+        };
+        synchronized (LATEST) {
+            Future<?> previous = LATEST.put(owner, task);
+            if (previous != null && !previous.isDone() && previous.cancel(true)) {
+                SUPERSEDED.incrementAndGet();
+            }
+        }
+        SUBMITTED.incrementAndGet();
+        EXECUTOR.execute(task);
+        return task;
+    }
+
+    private static void forget(Object owner, Object task) {
+        synchronized (LATEST) {
+            LATEST.remove(owner, task);
+        }
+    }
+
+    /**
+     * Lets a running job notice that it was superseded
+     */
+    public static void checkCancelled() {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new CancellationException();
+        }
+    }
+
+    private static void record(long latency) {
+        COMPLETED.incrementAndGet();
+        TOTAL_LATENCY.addAndGet(latency);
+        lastLatency = latency;
+        if (latency > maxLatency) {
+            maxLatency = latency;
+        }
+    }
+
+    public static int getQueueDepth() {
+        return EXECUTOR.getQueue().size();
+    }
+
+    public static int getRunning() {
+        return EXECUTOR.getActiveCount();
+    }
+
+    /**
+     * @return how long the last job took from being submitted until it finished
+     */
+    public static long getLastLatencyMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(lastLatency);
+    }
+
+    public static long getAverageLatencyMillis() {
+        long completed = COMPLETED.get();
+        return completed == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(TOTAL_LATENCY.get() / completed);
+    }
+
+    public static long getMaxLatencyMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxLatency);
+    }
+
+    public static String describe() {
+        return "Syntax highlighting: " + getQueueDepth() + " queued, " + getRunning() + " running\n"
+                + SUBMITTED.get() + " submitted, " + COMPLETED.get() + " completed, "
+                + SUPERSEDED.get() + " superseded, " + DROPPED.get() + " dropped\n"
+                + "Latency: last " + getLastLatencyMillis() + "ms, average " + getAverageLatencyMillis() + "ms, max " + getMaxLatencyMillis() + "ms";
+    }
+}
@@ -0,0 +1,253 @@
+/*
+ * Copyright 2017 Sam Sun <github-contact@samczsun.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.heliosdecompiler.helios.gui.view.editors;
+
+import javafx.animation.PauseTransition;
+import javafx.concurrent.Task;
+import org.fxmisc.richtext.CodeArea;
+import org.fxmisc.richtext.model.PlainTextChange;
+import org.fxmisc.richtext.model.TwoDimensional;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Keeps the syntax highlighting of a code area up to date one paragraph at a time. Edits only mark the paragraphs
+ * they touch, which are then re-lexed in small batches on the {@link HighlightingExecutor}, visible ones first, until
+ * the lexer state at a paragraph boundary matches what was there before. Everything off screen is filled in after,
+ * and scrolling to paragraphs which are not done yet moves them to the front
+ *
+ * Only ever touched on the FX thread
+ */
+final class IncrementalHighlighter {
+    private static final int BATCH_PARAGRAPHS = 200;
+    private static final int LOOKBACK_PARAGRAPHS = 200;
+    private static final javafx.util.Duration RETRY_DELAY = javafx.util.Duration.seconds(2);
+
+    private static final int STATE_MASK = 0xFF;
+    private static final int UNKNOWN = 0xFF;
+    private static final int DIRTY = 0x100;
+
+    private final CodeArea codeArea;
+
+    // The lexer state each paragraph starts in, with DIRTY set while its style spans are out of date
+    private final List<Integer> paragraphs = new ArrayList<>();
+    private Task<List<JavaLexer.Line>> running;
+    private int runningFrom;
+    private int runningTo;
+    private boolean debounced;
+
+    private IncrementalHighlighter(CodeArea codeArea) {
+        this.codeArea = codeArea;
+    }
+
+    static IncrementalHighlighter install(CodeArea codeArea) {
+        return install(codeArea, Duration.ZERO);
+    }
+
+    /**
+     * @param debounce how long edits have to settle before highlighting starts on them, for areas the user types in
+     */
+    static IncrementalHighlighter install(CodeArea codeArea, Duration debounce) {
+        IncrementalHighlighter highlighter = new IncrementalHighlighter(codeArea);
+        highlighter.reset();
+        highlighter.debounced = !debounce.isZero();
+        codeArea.plainTextChanges()
+                .filter(ch -> !ch.getInserted().equals(ch.getRemoved()))
+                .subscribe(highlighter::onChange);
+        if (highlighter.debounced) {
+            codeArea.plainTextChanges()
+                    .filter(ch -> !ch.getInserted().equals(ch.getRemoved()))
+                    .successionEnds(debounce)
+                    .subscribe(ch -> highlighter.schedule());
+        }
+        codeArea.estimatedScrollYProperty().addListener((observable, oldValue, newValue) -> highlighter.onViewportChanged());
+        codeArea.heightProperty().addListener((observable, oldValue, newValue) -> highlighter.onViewportChanged());
+        highlighter.schedule();
+        return highlighter;
+    }
+
+    private void reset() {
+        paragraphs.clear();
+        paragraphs.addAll(Collections.nCopies(codeArea.getParagraphs().size(), UNKNOWN | DIRTY));
+        paragraphs.set(0, JavaLexer.NORMAL | DIRTY);
+    }
+
+    private void onChange(PlainTextChange change) {
+        int removedLines = countLines(change.getRemoved());
+        int insertedLines = countLines(change.getInserted());
+        int first = codeArea.offsetToPosition(change.getPosition(), TwoDimensional.Bias.Forward).getMajor();
+
+        if (first + removedLines >= paragraphs.size()
+                || paragraphs.size() - removedLines + insertedLines != codeArea.getParagraphs().size()) {
+            reset();
+        } else {
+            // The paragraph the change starts in keeps its entry state, everything after it is only known once the
+            // lexer gets there
+            paragraphs.subList(first + 1, first + 1 + removedLines).clear();
+            paragraphs.addAll(first + 1, Collections.nCopies(insertedLines, UNKNOWN | DIRTY));
+            paragraphs.set(first, paragraphs.get(first) | DIRTY);
+        }
+        if (!debounced) {
+            schedule();
+        }
+    }
+
+    /**
+     * Makes sure whatever just scrolled into view is lexed next, rather than after the batch which is running
+     */
+    private void onViewportChanged() {
+        int firstVisible = firstVisible();
+        int lastVisible = lastVisible();
+        int dirty = firstDirty(firstVisible, lastVisible + 1);
+        if (dirty == -1) {
+            return;
+        }
+        if (running != null && (dirty < runningFrom || dirty >= runningTo)) {
+            Task<List<JavaLexer.Line>> task = running;
+            running = null;
+            task.cancel();
+        }
+        schedule();
+    }
+
+    private void schedule() {
+        if (running != null) {
+            return;
+        }
+
+        int start = firstDirty(firstVisible(), lastVisible() + 1);
+        if (start == -1) {
+            start = firstDirty(0, paragraphs.size());
+            if (start == -1) {
+                return;
+            }
+        }
+
+        // Lexing has to start from a known state, so back up a little if needed and otherwise guess. A wrong guess
+        // is corrected once the paragraphs above have been lexed and the states no longer line up
+        int from = start;
+        while (from > 0 && (paragraphs.get(from) & STATE_MASK) == UNKNOWN && start - from < LOOKBACK_PARAGRAPHS) {
+            from--;
+        }
+        int entry = paragraphs.get(from) & STATE_MASK;
+        if (entry == UNKNOWN) {
+            entry = JavaLexer.NORMAL;
+            paragraphs.set(from, entry | DIRTY);
+        }
+
+        int to = Math.min(paragraphs.size(), from + BATCH_PARAGRAPHS);
+        List<String> texts = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            texts.add(codeArea.getParagraph(i).getText());
+        }
+
+        int batchStart = from;
+        int batchEntry = entry;
+        Task<List<JavaLexer.Line>> task = HighlightingExecutor.submit(codeArea, () -> JavaLexer.lex(texts, batchEntry));
+        running = task;
+        runningFrom = from;
+        runningTo = to;
+        task.setOnSucceeded(event -> {
+            if (running == task) {
+                running = null;
+                apply(batchStart, batchEntry, texts, task.getValue());
+                schedule();
+            }
+        });
+        task.setOnCancelled(event -> {
+            // Dropped because the executor is full. Resubmitting right away would only push out another editor's
+            // job, so the paragraphs stay dirty until the next edit or viewport change picks them up again
+            if (running == task) {
+                running = null;
+            }
+        });
+        task.setOnFailed(event -> {
+            if (running == task) {
+                running = null;
+                task.getException().printStackTrace();
+                // The paragraphs are still dirty, so try again in a bit rather than spinning on the same failure
+                PauseTransition retry = new PauseTransition(RETRY_DELAY);
+                retry.setOnFinished(e -> schedule());
+                retry.play();
+            }
+        });
+    }
+
+    private void apply(int from, int entry, List<String> texts, List<JavaLexer.Line> lines) {
+        if (from >= paragraphs.size() || (paragraphs.get(from) & STATE_MASK) != entry) {
+            return;
+        }
+
+        // The text may have changed while the batch was being lexed, so only the part that still matches is kept
+        int state = entry;
+        int index = from;
+        for (int i = 0; i < lines.size(); i++, index++) {
+            if (index >= paragraphs.size() || !codeArea.getParagraph(index).getText().equals(texts.get(i))) {
+                return;
+            }
+            int stored = paragraphs.get(index);
+            if ((stored & DIRTY) != 0 || (stored & STATE_MASK) != state) {
+                codeArea.setStyleSpans(index, 0, lines.get(i).getSpans());
+            }
+            paragraphs.set(index, state);
+            state = lines.get(i).getExitState();
+        }
+
+        if (index < paragraphs.size() && (paragraphs.get(index) & STATE_MASK) != state) {
+            paragraphs.set(index, state | DIRTY);
+        }
+    }
+
+    private int firstDirty(int from, int to) {
+        for (int i = Math.max(0, from); i < Math.min(to, paragraphs.size()); i++) {
+            if ((paragraphs.get(i) & DIRTY) != 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int firstVisible() {
+        try {
+            return codeArea.firstVisibleParToAllParIndex();
+        } catch (IllegalStateException | IndexOutOfBoundsException e) {
+            // Nothing has been laid out yet
+            return 0;
+        }
+    }
+
+    private int lastVisible() {
+        try {
+            return codeArea.lastVisibleParToAllParIndex();
+        } catch (IllegalStateException | IndexOutOfBoundsException e) {
+            return BATCH_PARAGRAPHS;
+        }
+    }
+
+    private static int countLines(String text) {
+        int lines = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '\n') {
+                lines++;
+            }
+        }
+        return lines;
+    }
+}
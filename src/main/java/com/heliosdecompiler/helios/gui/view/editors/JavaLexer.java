@@ -0,0 +1,140 @@
+/*
+ * Copyright 2017 Sam Sun <github-contact@samczsun.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.heliosdecompiler.helios.gui.view.editors;
+
+import org.fxmisc.richtext.model.StyleSpans;
+import org.fxmisc.richtext.model.StyleSpansBuilder;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Tokenizes code one paragraph at a time. The only thing that carries over from one line to the next is whether a
+ * block comment is still open, so lexing can resume at any paragraph as long as its entry state is known
+ */
+final class JavaLexer {
+    static final int NORMAL = 0;
+    static final int IN_BLOCK_COMMENT = 1;
+
+    private JavaLexer() {
+    }
+
+    static List<Line> lex(List<String> paragraphs, int state) {
+        List<Line> lines = new ArrayList<>(paragraphs.size());
+        for (String paragraph : paragraphs) {
+            HighlightingExecutor.checkCancelled();
+            Line line = lex(paragraph, state);
+            lines.add(line);
+            state = line.getExitState();
+        }
+        return lines;
+    }
+
+    static Line lex(String text, int state) {
+        StyleSpansBuilder<Collection<String>> spansBuilder = new StyleSpansBuilder<>();
+        int lastKwEnd = 0;
+        if (state == IN_BLOCK_COMMENT) {
+            int close = text.indexOf("*/");
+            if (close == -1) {
+                spansBuilder.add(Collections.singleton("comment"), text.length());
+                return new Line(spansBuilder.create(), IN_BLOCK_COMMENT);
+            }
+            lastKwEnd = close + 2;
+            spansBuilder.add(Collections.singleton("comment"), lastKwEnd);
+            state = NORMAL;
+        }
+
+        Matcher matcher = PATTERN.matcher(text);
+        matcher.useTransparentBounds(true).region(lastKwEnd, text.length());
+        while (matcher.find()) {
+            String styleClass =
+                    matcher.group("KEYWORD") != null ? "keyword" :
+                            matcher.group("PAREN") != null ? "paren" :
+                                    matcher.group("BRACE") != null ? "brace" :
+                                            matcher.group("BRACKET") != null ? "bracket" :
+                                                    matcher.group("SEMICOLON") != null ? "semicolon" :
+                                                            matcher.group("STRING") != null ? "string" :
+                                                                    matcher.group("COMMENT") != null ? "comment" :
+                                                                            matcher.group("OPENCOMMENT") != null ? "comment" :
+                                                                                    null; /* never happens */
+            assert styleClass != null;
+            if (matcher.group("OPENCOMMENT") != null) {
+                state = IN_BLOCK_COMMENT;
+            }
+            spansBuilder.add(Collections.emptyList(), matcher.start() - lastKwEnd);
+            spansBuilder.add(Collections.singleton(styleClass), matcher.end() - matcher.start());
+            lastKwEnd = matcher.end();
+        }
+        spansBuilder.add(Collections.emptyList(), text.length() - lastKwEnd);
+        return new Line(spansBuilder.create(), state);
+    }
+
+    static final class Line {
+        private final StyleSpans<Collection<String>> spans;
+        private final int exitState;
+
+        Line(StyleSpans<Collection<String>> spans, int exitState) {
+            this.spans = spans;
+            this.exitState = exitState;
+        }
+
+        StyleSpans<Collection<String>> getSpans() {
+            return spans;
+        }
+
+        int getExitState() {
+            return exitState;
+        }
+    }
+
+    private static final String[] KEYWORDS = new String[]{
+            "abstract", "assert", "boolean", "break", "byte",
+            "case", "catch", "char", "class", "const",
+            "continue", "default", "do", "double", "else",
+            "enum", "extends", "final", "finally", "float",
+            "for", "goto", "if", "implements", "import",
+            "instanceof", "int", "interface", "long", "native",
+            "new", "package", "private", "protected", "public",
+            "return", "short", "static", "strictfp", "super",
+            "switch", "synchronized", "this", "throw", "throws",
+            "transient", "try", "void", "volatile", "while"
+    };
+
+    private static final String KEYWORD_PATTERN = "\\b(" + String.join("|", KEYWORDS) + ")\\b";
+    private static final String PAREN_PATTERN = "\\(|\\)";
+    private static final String BRACE_PATTERN = "\\{|\\}";
+    private static final String BRACKET_PATTERN = "\\[|\\]";
+    private static final String SEMICOLON_PATTERN = "\\;";
+    private static final String STRING_PATTERN = "\"([^\"\\\\]|\\\\.)*\"";
+    private static final String COMMENT_PATTERN = "//.*" + "|" + "/\\*.*?\\*/";
+    private static final String OPEN_COMMENT_PATTERN = "/\\*.*";
+
+    private static final Pattern PATTERN = Pattern.compile(
+            "(?<KEYWORD>" + KEYWORD_PATTERN + ")"
+                    + "|(?<PAREN>" + PAREN_PATTERN + ")"
+                    + "|(?<BRACE>" + BRACE_PATTERN + ")"
+                    + "|(?<BRACKET>" + BRACKET_PATTERN + ")"
+                    + "|(?<SEMICOLON>" + SEMICOLON_PATTERN + ")"
+                    + "|(?<STRING>" + STRING_PATTERN + ")"
+                    + "|(?<COMMENT>" + COMMENT_PATTERN + ")"
+                    + "|(?<OPENCOMMENT>" + OPEN_COMMENT_PATTERN + ")"
+    );
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2017 Sam Sun <github-contact@samczsun.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.heliosdecompiler.helios.gui.view.editors;
+
+import com.heliosdecompiler.helios.controller.files.OpenedFile;
+import com.heliosdecompiler.helios.controller.transformers.decompilers.DecompileRequest;
+import com.heliosdecompiler.helios.controller.transformers.decompilers.DecompilerController;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * Runs several decompilers on the same class at once and shows whichever succeeds first. If the first result did not
+ * come from the preferred decompiler, the preferred one is given a grace period to finish and replace it. Every other
+ * decompiler is cancelled as soon as the output is settled
+ */
+public class RaceDecompilerView extends DecompilerView {
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "Decompiler Race Timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final List<DecompilerController<?>> controllers;
+    private final DecompilerController<?> preferred;
+    private final long gracePeriod;
+
+    /**
+     * @param controllers the decompilers to race, the first of which is preferred
+     */
+    public RaceDecompilerView(List<DecompilerController<?>> controllers, long gracePeriod) {
+        super(controllers.get(0));
+        this.controllers = new ArrayList<>(controllers);
+        this.preferred = controllers.get(0);
+        this.gracePeriod = gracePeriod;
+    }
+
+    @Override
+    protected DecompileRequest decompile(OpenedFile file, String path, BiConsumer<Boolean, String> display) {
+        new Race(display).start(file, path);
+        return null;
+    }
+
+    @Override
+    protected boolean supportsMethodScope() {
+        return false;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "Fastest Decompiler";
+    }
+
+    private class Race {
+        private final BiConsumer<Boolean, String> display;
+        private final Map<DecompilerController<?>, DecompileRequest> requests = new LinkedHashMap<>();
+        private final StringBuilder failures = new StringBuilder();
+
+        private DecompilerController<?> shown;
+        private boolean preferredFailed;
+        private boolean settled;
+        private int remaining;
+
+        Race(BiConsumer<Boolean, String> display) {
+            this.display = display;
+        }
+
+        synchronized void start(OpenedFile file, String path) {
+            remaining = controllers.size();
+            for (DecompilerController<?> controller : controllers) {
+                if (settled) {
+                    break;
+                }
+                requests.put(controller, controller.decompile(file, path, (success, text) -> onResult(controller, success, text)));
+            }
+            if (settled) {
+                cancelAllExcept(shown);
+            }
+        }
+
+        synchronized void onResult(DecompilerController<?> controller, boolean success, String text) {
+            remaining--;
+            if (settled) {
+                return;
+            }
+
+            if (success) {
+                if (shown == null || controller == preferred) {
+                    shown = controller;
+                    display.accept(true, "// Decompiled using " + controller.getDisplayName() + "\r\n" + text);
+                }
+                if (controller == preferred || preferredFailed || gracePeriod <= 0) {
+                    settle();
+                } else {
+                    // Keep the preferred decompiler running for a little while in case it produces nicer output
+                    for (Map.Entry<DecompilerController<?>, DecompileRequest> entry : requests.entrySet()) {
+                        if (entry.getKey() != preferred && entry.getKey() != shown) {
+                            entry.getValue().cancel();
+                        }
+                    }
+                    TIMER.schedule(this::settle, gracePeriod, TimeUnit.MILLISECONDS);
+                }
+            } else {
+                failures.append("=== ").append(controller.getDisplayName()).append(" ===\r\n").append(text).append("\r\n\r\n");
+                if (controller == preferred) {
+                    preferredFailed = true;
+                    if (shown != null) {
+                        settle();
+                    }
+                }
+                if (remaining == 0 && shown == null) {
+                    settled = true;
+                    display.accept(false, failures.toString());
+                }
+            }
+        }
+
+        synchronized void settle() {
+            if (!settled) {
+                settled = true;
+                cancelAllExcept(shown);
+            }
+        }
+
+        private void cancelAllExcept(DecompilerController<?> winner) {
+            for (Map.Entry<DecompilerController<?>, DecompileRequest> entry : requests.entrySet()) {
+                if (entry.getKey() != winner) {
+                    entry.getValue().cancel();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2017 Sam Sun <github-contact@samczsun.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.heliosdecompiler.helios.utils;
+
+/**
+ * The text a transformer produced, or the explanation of why it could not, as shared through a {@link SingleFlight}
+ */
+public class Outcome {
+    private final boolean success;
+    private final String text;
+
+    public Outcome(boolean success, String text) {
+        this.success = success;
+        this.text = text;
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    public String getText() {
+        return text;
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2017 Sam Sun <github-contact@samczsun.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.heliosdecompiler.helios.utils;
+
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * Lets concurrent callers which ask for the same key share a single computation. The first caller claims the key and
+ * computes the value, and everyone arriving before it finishes waits on the same future
+ */
+public class SingleFlight<K, V> {
+    private final Map<K, CompletableFuture<V>> flights = new ConcurrentHashMap<>();
+
+    /**
+     * @return the future of the computation running for the key, or null if there is none
+     */
+    public CompletableFuture<V> get(K key) {
+        return flights.get(key);
+    }
+
+    public Flight claim(K key) {
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> existing = flights.putIfAbsent(key, future);
+        return existing == null ? new Flight(key, future, true) : new Flight(key, existing, false);
+    }
+
+    /**
+     * Runs the task, unless the key is already being computed in which case that result is waited for instead
+     */
+    public V execute(K key, Callable<V> task) throws Exception {
+        Flight flight = claim(key);
+        if (!flight.isOwner()) {
+            try {
+                return flight.getFuture().get();
+            } catch (ExecutionException ex) {
+                throw ex.getCause() instanceof Exception ? (Exception) ex.getCause() : ex;
+            }
+        }
+        try {
+            V value = task.call();
+            flight.complete(value);
+            return value;
+        } catch (Exception ex) {
+            flight.fail(ex);
+            throw ex;
+        } finally {
+            flight.fail(new CancellationException());
+        }
+    }
+
+    public class Flight {
+        private final K key;
+        private final CompletableFuture<V> future;
+        private final boolean owner;
+
+        private Flight(K key, CompletableFuture<V> future, boolean owner) {
+            this.key = key;
+            this.future = future;
+            this.owner = owner;
+        }
+
+        /**
+         * @return whether the caller claimed the key, and so has to complete or fail it
+         */
+        public boolean isOwner() {
+            return owner;
+        }
+
+        public CompletableFuture<V> getFuture() {
+            return future;
+        }
+
+        public void complete(V value) {
+            if (owner) {
+                flights.remove(key, future);
+                future.complete(value);
+            }
+        }
+
+        /**
+         * Does nothing if the flight was already completed
+         */
+        public void fail(Throwable cause) {
+            if (owner) {
+                flights.remove(key, future);
+                future.completeExceptionally(cause);
+            }
+        }
+    }
+}
@@ -0,0 +1,244 @@
+# Copyright 2017 Sam Sun <github-contact@samczsun.com>
+#
+# Licensed under the Apache License, Version 2.0 (the "License");
+# you may not use this file except in compliance with the License.
+# You may obtain a copy of the License at
+#
+#     http://www.apache.org/licenses/LICENSE-2.0
+#
+# Unless required by applicable law or agreed to in writing, software
+# distributed under the License is distributed on an "AS IS" BASIS,
+# WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+# See the License for the specific language governing permissions and
+# limitations under the License.
+
+# Long lived Krakatau worker used by Helios. Each request is the command line Krakatau would have been started with,
+# and is run inside this interpreter so that imported modules and opened path jars stay loaded between requests.
+# decompile.py is imported once and its entry point called directly, with one class environment kept per library
+# path; any other script is run as __main__.
+#
+# Frames are big endian. A request is an int count followed by that many strings: the working directory, then the
+# script and its arguments. A response is the exit code followed by the captured stdout and stderr. Strings are an
+# int length followed by UTF-8 bytes.
+
+import argparse
+import imp
+import os
+import runpy
+import struct
+import sys
+import traceback
+import zipfile
+from StringIO import StringIO
+from collections import OrderedDict
+
+if sys.platform == 'win32':
+    import msvcrt
+    msvcrt.setmode(sys.stdin.fileno(), os.O_BINARY)
+    msvcrt.setmode(sys.stdout.fileno(), os.O_BINARY)
+
+protocol_in = sys.stdin
+protocol_out = sys.stdout
+
+_open_zipfile = zipfile.ZipFile
+MAX_RESIDENT = 16
+MAX_SEEN = 256
+
+# Jars kept open between requests, least recently used first
+_resident = OrderedDict()
+# Jars which were opened by an earlier request, so are probably part of the path rather than a one off input
+_seen = OrderedDict()
+# Jars opened for the current request only, which are closed once it is done
+_transient = []
+
+
+def resident_zipfile(file, mode='r', *args, **kwargs):
+    # A jar becomes resident once a second request opens it unchanged. Krakatau's input jar is a new temporary file
+    # every time, so it is closed after its request and never piles up or stays locked
+    if mode != 'r' or not isinstance(file, basestring):
+        return _open_zipfile(file, mode, *args, **kwargs)
+    path = os.path.abspath(file)
+    stat = os.stat(path)
+    key = (path, stat.st_mtime, stat.st_size)
+    archive = _resident.pop(key, None)
+    if archive is not None:
+        _resident[key] = archive
+        return archive
+
+    archive = _open_zipfile(file, mode, *args, **kwargs)
+    if key not in _seen:
+        _transient.append((key, archive))
+        return archive
+
+    for stale in [k for k in _resident if k[0] == path]:
+        _open_zipfile.close(_resident.pop(stale))
+    archive.close = lambda: None
+    _resident[key] = archive
+    while len(_resident) > MAX_RESIDENT:
+        _open_zipfile.close(_resident.popitem(last=False)[1])
+    return archive
+
+
+def release_transient():
+    for key, archive in _transient:
+        archive.close()
+        _seen.pop(key, None)
+        _seen[key] = True
+    del _transient[:]
+    while len(_seen) > MAX_SEEN:
+        _seen.popitem(last=False)
+
+
+zipfile.ZipFile = resident_zipfile
+
+
+def read_exact(length):
+    data = protocol_in.read(length)
+    if len(data) != length:
+        raise EOFError()
+    return data
+
+
+def read_int():
+    return struct.unpack('>i', read_exact(4))[0]
+
+
+def read_string():
+    return read_exact(read_int())
+
+
+def write_string(value):
+    if isinstance(value, unicode):
+        value = value.encode('utf-8')
+    protocol_out.write(struct.pack('>i', len(value)))
+    protocol_out.write(value)
+
+
+# Imported entry scripts, by path and modification time
+_modules = {}
+# Class environments by library path, so that library classes are only parsed once
+_environments = OrderedDict()
+MAX_ENVIRONMENTS = 4
+
+
+def load_module(script):
+    key = (script, os.stat(script).st_mtime)
+    module = _modules.get(key)
+    if module is None:
+        # Not imported as __main__, so the command line handling at the bottom of the script does not run
+        module = imp.load_source('helios_krakatau_' + str(len(_modules)), script)
+        _modules[key] = module
+    return module
+
+
+def decompile_parser():
+    # The arguments of Krakatau's decompile.py
+    parser = argparse.ArgumentParser(add_help=False)
+    parser.add_argument('-path', action='append')
+    parser.add_argument('-out')
+    parser.add_argument('-nauto', action='store_true')
+    parser.add_argument('-r', action='store_true')
+    parser.add_argument('-skip', action='store_true')
+    parser.add_argument('-xmagicthrow', action='store_true')
+    parser.add_argument('target')
+    return parser
+
+
+def cached_environment(module, library):
+    key = tuple((part, os.stat(part).st_mtime) if os.path.exists(part) else (part, None) for part in library)
+    env = _environments.pop(key, None)
+    if env is None:
+        env = module.Environment()
+    _environments[key] = env
+    while len(_environments) > MAX_ENVIRONMENTS:
+        _environments.popitem(last=False)
+    env.path = []
+    return env
+
+
+def decompile(script, argv):
+    module = load_module(script)
+    if not hasattr(module, 'decompileClass') or not hasattr(module, 'Environment'):
+        return None
+    try:
+        args = decompile_parser().parse_args(argv)
+    except SystemExit:
+        return None
+
+    library = []
+    if not args.nauto and hasattr(module, 'findJRE'):
+        found = module.findJRE()
+        if found:
+            library.append(found)
+    for part in args.path or []:
+        library.extend(part.split(';'))
+    path = list(library)
+    if args.target.endswith('.jar'):
+        path.append(args.target)
+
+    targets = module.script_util.findFiles(args.target, args.r, '.class')
+    targets = map(module.script_util.normalizeClassname, targets)
+
+    env = cached_environment(module, library)
+    environment = module.Environment
+    module.Environment = lambda: env
+    try:
+        module.decompileClass(path, targets, args.out, args.skip, magic_throw=args.xmagicthrow)
+    finally:
+        module.Environment = environment
+        # The input is a new file every time, so only classes from the library stay loaded
+        for target in targets:
+            env.classes.pop(target.decode('utf8'), None)
+    return 0
+
+
+def run(cwd, argv):
+    script = os.path.abspath(argv[0])
+    script_dir = os.path.dirname(script)
+    if script_dir not in sys.path:
+        sys.path.insert(0, script_dir)
+    if cwd:
+        os.chdir(cwd)
+    sys.argv = [script] + argv[1:]
+    try:
+        if os.path.basename(script) == 'decompile.py':
+            code = decompile(script, argv[1:])
+            if code is not None:
+                return code
+        runpy.run_path(script, run_name='__main__')
+        return 0
+    except SystemExit as e:
+        if e.code is None:
+            return 0
+        return e.code if isinstance(e.code, int) else 1
+    except BaseException:
+        traceback.print_exc()
+        return 1
+
+
+def main():
+    while True:
+        try:
+            count = read_int()
+        except EOFError:
+            return
+        args = [read_string() for _ in range(count)]
+
+        stdout = StringIO()
+        stderr = StringIO()
+        sys.stdout = stdout
+        sys.stderr = stderr
+        try:
+            code = run(args[0], args[1:])
+        finally:
+            sys.stdout = sys.__stdout__
+            sys.stderr = sys.__stderr__
+            release_transient()
+
+        protocol_out.write(struct.pack('>i', code))
+        write_string(stdout.getvalue())
+        write_string(stderr.getvalue())
+        protocol_out.flush()
+
+
+main()